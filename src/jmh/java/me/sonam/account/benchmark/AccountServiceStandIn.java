@@ -0,0 +1,132 @@
+package me.sonam.account.benchmark;
+
+import me.sonam.account.Application;
+import me.sonam.account.repo.AccountRepository;
+import me.sonam.account.repo.PasswordSecretRepository;
+import me.sonam.account.repo.entity.Account;
+import me.sonam.account.repo.entity.PasswordSecret;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the application once per trial against the H2 R2DBC database with the
+ * authentication, user, email and token endpoints answered in-process by a MockWebServer.
+ * Latency and error rate of each stubbed service are set with system properties, see {@link #stub}.
+ * Used by the jmh benchmarks and by {@link LoadTest}.
+ */
+@State(Scope.Benchmark)
+public class AccountServiceStandIn {
+    public static final String ACTIVE_AUTHENTICATION_ID = "benchmark-active";
+    public static final String ACTIVE_EMAIL = "benchmark-active@sonam.email";
+    public static final String ACTIVE_SECRET = "benchmarksecret";
+
+    private static final String TOKEN_RESPONSE = "{\"access_token\": \"benchmark-token\", \"scope\": \"message.read message.write\"," +
+            " \"token_type\": \"Bearer\", \"expires_in\": 299}";
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private MockWebServer mockWebServer;
+    private ConfigurableApplicationContext context;
+    private WebClient client;
+    private AccountRepository accountRepository;
+    private PasswordSecretRepository passwordSecretRepository;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        mockWebServer = new MockWebServer();
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+
+                if (path.startsWith("/oauth2/token")) {
+                    return new MockResponse().setHeader("Content-Type", "application/json").setBody(TOKEN_RESPONSE);
+                }
+                if (path.startsWith("/emails")) {
+                    return stub("email", new MockResponse().setHeader("Content-Type", "application/json").setResponseCode(201)
+                            .setBody("{\"message\":\"email successfully sent\"}"));
+                }
+                if (path.startsWith("/users/")) {
+                    return stub("user", new MockResponse().setResponseCode(200).setBody("success"));
+                }
+                if (path.startsWith("/authentications/")) {
+                    return stub("authentication", new MockResponse().setResponseCode(200).setBody("success"));
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        mockWebServer.start();
+
+        context = new SpringApplicationBuilder(Application.class)
+                .profiles("localdevtest")
+                .properties("spring.config.location=classpath:/benchmark.yml",
+                        "downstream.root=http://localhost:" + mockWebServer.getPort())
+                .run();
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        client = WebClient.builder().baseUrl("http://localhost:" + port).build();
+        accountRepository = context.getBean(AccountRepository.class);
+        passwordSecretRepository = context.getBean(PasswordSecretRepository.class);
+
+        saveAccount(ACTIVE_AUTHENTICATION_ID, ACTIVE_EMAIL, true, ACTIVE_SECRET);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        context.close();
+        mockWebServer.shutdown();
+    }
+
+    /**
+     * delay the response by standin.<service>.latencyMs and fail standin.<service>.errorRate of the calls,
+     * both fall back to standin.latencyMs and standin.errorRate
+     */
+    private static MockResponse stub(String service, MockResponse response) {
+        long latencyMs = Long.getLong("standin." + service + ".latencyMs", Long.getLong("standin.latencyMs", 0));
+        double errorRate = Double.parseDouble(System.getProperty("standin." + service + ".errorRate",
+                System.getProperty("standin.errorRate", "0")));
+
+        if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+            response = new MockResponse().setResponseCode(500).setBody(service + "-rest-service stand-in error");
+        }
+        return response.setHeadersDelay(latencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    public WebClient client() {
+        return client;
+    }
+
+    public String nextId(String prefix) {
+        return prefix + "-" + sequence.incrementAndGet();
+    }
+
+    public void saveAccount(String authenticationId, String email, boolean active, String secret) {
+        saveAccount(authenticationId, email, active, secret, ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime().plusHours(1));
+    }
+
+    public void saveAccount(String authenticationId, String email, boolean active, String secret, LocalDateTime secretExpiresAt) {
+        accountRepository.save(new Account(authenticationId, email, active, LocalDateTime.now(), UUID.randomUUID()))
+                .then(passwordSecretRepository.save(new PasswordSecret(authenticationId, secret, secretExpiresAt)))
+                .block();
+    }
+}
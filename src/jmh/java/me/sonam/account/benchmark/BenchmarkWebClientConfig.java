@@ -0,0 +1,42 @@
+package me.sonam.account.benchmark;
+
+import io.micrometer.observation.ObservationRegistry;
+import me.sonam.account.config.ClientCredentialsFilter;
+import me.sonam.account.config.DownstreamWebClients;
+import me.sonam.account.downstream.DownstreamGuards;
+import me.sonam.account.handler.UserAccountService;
+import me.sonam.security.headerfilter.ReactiveRequestContextHolder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * non-loadbalanced webclients for the benchmarks, same as the test profile uses
+ */
+@Profile("localdevtest")
+@Configuration
+public class BenchmarkWebClientConfig {
+    @Bean
+    public WebClient.Builder webClientBuilder() {
+        return WebClient.builder();
+    }
+
+    @Bean
+    public ReactiveRequestContextHolder reactiveRequestContextHolder() {
+        return new ReactiveRequestContextHolder(webClientBuilder());
+    }
+
+    @Bean
+    public DownstreamWebClients downstreamWebClients(ObservationRegistry observationRegistry, Environment environment,
+                                                     DownstreamGuards downstreamGuards) {
+        return new DownstreamWebClients(webClientBuilder(), reactiveRequestContextHolder().headerFilter(),
+                new ClientCredentialsFilter(webClientBuilder(), environment), observationRegistry, environment, downstreamGuards);
+    }
+
+    @Bean
+    public UserAccountService userAccountService(DownstreamWebClients downstreamWebClients) {
+        return new UserAccountService(downstreamWebClients);
+    }
+}
@@ -0,0 +1,261 @@
+package me.sonam.account.benchmark;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Open-model load test of the {@code Router} routes against {@link AccountServiceStandIn}.
+ * Requests arrive as a Poisson process at loadtest.rate per second regardless of how fast the
+ * application answers, and latency is measured from the scheduled arrival time so queueing
+ * shows up in the numbers.  Every route gets its own HDR histogram, written as a .hgrm
+ * percentile distribution to loadtest.output.  Run with ./gradlew loadTest.
+ */
+public class LoadTest {
+    private static final Logger LOG = LoggerFactory.getLogger(LoadTest.class);
+
+    private static final String SECRET = "loadtestsecret";
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final AccountServiceStandIn standIn;
+    private final List<Route> routes = new ArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final int accounts = Integer.getInteger("loadtest.accounts", 500);
+    private final double rate = Double.parseDouble(System.getProperty("loadtest.rate", "200"));
+    private final Duration warmup = Duration.parse(System.getProperty("loadtest.warmup", "PT10S"));
+    private final Duration duration = Duration.parse(System.getProperty("loadtest.duration", "PT60S"));
+    private final File output = new File(System.getProperty("loadtest.output", "build/results/loadtest"));
+
+    private final Queue<String> inactive = new ConcurrentLinkedQueue<>();
+    private final Queue<String> expired = new ConcurrentLinkedQueue<>();
+
+    public LoadTest(AccountServiceStandIn standIn) {
+        this.standIn = standIn;
+        WebClient client = standIn.client();
+
+        // weights approximate production traffic, reads and logins dominate
+        route("isAccountActive", 30, () -> exchange(client.get().uri("/accounts/{authenticationId}/active", active())));
+        route("validateEmailLoginSecret", 20, () -> exchange(client.get().uri("/accounts/{email}/password-secret/{secret}",
+                email(active()), SECRET)));
+        route("createAccount", 10, () -> {
+            String authenticationId = standIn.nextId("load-create");
+            return exchange(client.post().uri("/accounts/{userId}/{authenticationId}/{email}",
+                    UUID.randomUUID(), authenticationId, email(authenticationId)));
+        });
+        route("activateAccount", 8, () -> exchange(client.get().uri("/accounts/{authenticationId}/active/{secret}",
+                next(inactive, "load-inactive"), SECRET)));
+        route("emailMySecretUsingEmail", 5, () -> exchange(client.put().uri("/accounts/email/{email}/password-secret",
+                encode(email(rotating())))));
+        route("sendLoginId", 5, () -> exchange(client.put().uri("/accounts/email/{email}/authentication-id", encode(email(active())))));
+        route("updateAuthenticationPassword", 5, () -> exchange(client.put().uri("/accounts/password-secret")
+                .bodyValue(Map.of("email", email(active()), "secret", SECRET, "password", "loadtest"))));
+        route("emailActivationLinkUsingEmail", 3, () -> exchange(client.put().uri("/accounts/active/email/{email}/password-secret",
+                encode(email(pending())))));
+        route("delete", 2, () -> exchange(client.method(HttpMethod.DELETE).uri("/accounts/email/{email}",
+                encode(email(next(expired, "load-expired"))))));
+        // needs a jwt of the logged in user, off unless the stand-in is given one
+        route("deleteMyData", 0, () -> exchange(client.method(HttpMethod.DELETE).uri("/accounts")));
+    }
+
+    public static void main(String[] args) throws Exception {
+        AccountServiceStandIn standIn = new AccountServiceStandIn();
+        standIn.start();
+        try {
+            new LoadTest(standIn).run();
+        }
+        finally {
+            standIn.stop();
+            System.exit(0);
+        }
+    }
+
+    public void run() throws InterruptedException, FileNotFoundException {
+        seed();
+        double totalWeight = routes.stream().mapToInt(route -> route.weight).sum();
+        LOG.warn("load test at {} requests/s for {} after {} warmup", rate, duration, warmup);
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        long next = start;
+
+        while (next < end) {
+            next += (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) / rate * TimeUnit.SECONDS.toNanos(1));
+            long delay = next - System.nanoTime();
+            if (delay > 0) {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+            send(pick(totalWeight), next, next >= measureFrom);
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        report();
+    }
+
+    private void send(Route route, long scheduledAt, boolean measure) {
+        inFlight.incrementAndGet();
+        route.call.get()
+                .onErrorReturn(-1)
+                .subscribe(status -> {
+                    inFlight.decrementAndGet();
+                    if (measure) {
+                        route.record(scheduledAt, status);
+                    }
+                });
+    }
+
+    private void seed() {
+        long expectedRequests = (long) (rate * (warmup.plus(duration).toSeconds()));
+        double totalWeight = routes.stream().mapToInt(route -> route.weight).sum();
+        long inactiveCount = share("activateAccount", expectedRequests, totalWeight);
+        long expiredCount = share("delete", expectedRequests, totalWeight);
+        LOG.warn("seeding {} active, {} rotating, {} pending, {} inactive and {} expired accounts", accounts, accounts, accounts, inactiveCount, expiredCount);
+
+        for (int i = 0; i < accounts; i++) {
+            standIn.saveAccount("load-active-" + i, email("load-active-" + i), true, SECRET);
+            standIn.saveAccount("load-rotate-" + i, email("load-rotate-" + i), true, SECRET);
+            standIn.saveAccount("load-pending-" + i, email("load-pending-" + i), false, SECRET);
+        }
+        for (long i = 0; i < inactiveCount; i++) {
+            String authenticationId = standIn.nextId("load-inactive");
+            standIn.saveAccount(authenticationId, email(authenticationId), false, SECRET);
+            inactive.add(authenticationId);
+        }
+        for (long i = 0; i < expiredCount; i++) {
+            String authenticationId = standIn.nextId("load-expired");
+            standIn.saveAccount(authenticationId, email(authenticationId), false, SECRET, LocalDateTime.now().minusDays(2));
+            expired.add(authenticationId);
+        }
+    }
+
+    private void report() throws FileNotFoundException {
+        output.mkdirs();
+        System.out.printf("%-32s %8s %8s %10s %10s %10s %10s %10s%n", "route", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        for (Route route : routes) {
+            Histogram histogram = route.histogram;
+            System.out.printf("%-32s %8d %8d %10.2f %10.2f %10.2f %10.2f %10.2f%n", route.name, histogram.getTotalCount(), route.errors.get(),
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+
+            try (PrintStream printStream = new PrintStream(new File(output, route.name + ".hgrm"))) {
+                histogram.outputPercentileDistribution(printStream, 1000.0);
+            }
+        }
+        LOG.warn("histograms written to {}", output.getAbsolutePath());
+    }
+
+    private void route(String name, int defaultWeight, Supplier<Mono<Integer>> call) {
+        routes.add(new Route(name, Integer.getInteger("loadtest.mix." + name, defaultWeight), call));
+    }
+
+    private Route pick(double totalWeight) {
+        double point = ThreadLocalRandom.current().nextDouble(totalWeight);
+        for (Route route : routes) {
+            point -= route.weight;
+            if (point < 0) {
+                return route;
+            }
+        }
+        return routes.get(0);
+    }
+
+    private long share(String name, long expectedRequests, double totalWeight) {
+        int weight = routes.stream().filter(route -> route.name.equals(name)).mapToInt(route -> route.weight).sum();
+        return (long) (expectedRequests * weight / totalWeight * 1.2) + 10;
+    }
+
+    private String active() {
+        return "load-active-" + ThreadLocalRandom.current().nextInt(accounts);
+    }
+
+    /**
+     * inactive accounts that ask for the activation link again
+     */
+    private String pending() {
+        return "load-pending-" + ThreadLocalRandom.current().nextInt(accounts);
+    }
+
+    /**
+     * active accounts whose secret gets replaced, kept apart so the secret of the other active accounts stays valid
+     */
+    private String rotating() {
+        return "load-rotate-" + ThreadLocalRandom.current().nextInt(accounts);
+    }
+
+    /**
+     * take a seeded account, once the seed is used up the id will not exist and the call is counted as an error
+     */
+    private static String next(Queue<String> queue, String prefix) {
+        String authenticationId = queue.poll();
+        return authenticationId != null ? authenticationId : prefix + "-exhausted";
+    }
+
+    private static String email(String authenticationId) {
+        return authenticationId + "@sonam.email";
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static Mono<Integer> exchange(WebClient.RequestHeadersSpec<?> request) {
+        return request.exchangeToMono(clientResponse -> clientResponse.releaseBody()
+                .thenReturn(clientResponse.statusCode().value()));
+    }
+
+    private static class Route {
+        final String name;
+        final int weight;
+        final Supplier<Mono<Integer>> call;
+        final Histogram histogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        final AtomicLong errors = new AtomicLong();
+
+        Route(String name, int weight, Supplier<Mono<Integer>> call) {
+            this.name = name;
+            this.weight = weight;
+            this.call = call;
+        }
+
+        void record(long scheduledAt, int status) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledAt);
+            histogram.recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+
+            if (status < 200 || status >= 300) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+}
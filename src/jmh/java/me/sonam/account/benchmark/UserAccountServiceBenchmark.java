@@ -0,0 +1,61 @@
+package me.sonam.account.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.UUID;
+
+/**
+ * End to end benchmarks of the UserAccountService hot paths, each call goes through the
+ * router, handler, service, H2 database and the stubbed downstream services.
+ * Throughput, sample-time percentiles and gc allocation rate are configured in build.gradle.
+ */
+public class UserAccountServiceBenchmark {
+
+    /**
+     * a fresh inactive account with a secret for every activation
+     */
+    @State(Scope.Thread)
+    public static class InactiveAccount {
+        String authenticationId;
+        final String secret = "activatesecret";
+
+        @Setup(Level.Invocation)
+        public void create(AccountServiceStandIn standIn) {
+            authenticationId = standIn.nextId("benchmark-activate");
+            standIn.saveAccount(authenticationId, authenticationId + "@sonam.email", false, secret);
+        }
+    }
+
+    @Benchmark
+    public String isAccountActive(AccountServiceStandIn standIn) {
+        return standIn.client().get().uri("/accounts/{authenticationId}/active", AccountServiceStandIn.ACTIVE_AUTHENTICATION_ID)
+                .retrieve().bodyToMono(String.class).block();
+    }
+
+    @Benchmark
+    public String createAccount(AccountServiceStandIn standIn) {
+        String authenticationId = standIn.nextId("benchmark-create");
+
+        return standIn.client().post().uri("/accounts/{userId}/{authenticationId}/{email}",
+                        UUID.randomUUID(), authenticationId, authenticationId + "@sonam.email")
+                .retrieve().bodyToMono(String.class).block();
+    }
+
+    @Benchmark
+    public String activateAccount(AccountServiceStandIn standIn, InactiveAccount inactiveAccount) {
+        return standIn.client().get().uri("/accounts/{authenticationId}/active/{secret}",
+                        inactiveAccount.authenticationId, inactiveAccount.secret)
+                .retrieve().bodyToMono(String.class).block();
+    }
+
+    @Benchmark
+    public String validateEmailLoginSecret(AccountServiceStandIn standIn) {
+        return standIn.client().get().uri("/accounts/{email}/password-secret/{secret}",
+                        AccountServiceStandIn.ACTIVE_EMAIL, AccountServiceStandIn.ACTIVE_SECRET)
+                .retrieve().bodyToMono(String.class).block();
+    }
+}
@@ -0,0 +1,54 @@
+package me.sonam.account.handler;
+
+import me.sonam.account.handler.email.Email;
+import me.sonam.account.repo.entity.PasswordSecret;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+
+/**
+ * Microbenchmarks of the in-memory work done on every account request,
+ * it lives in the handler package to reach the email body assembly.
+ */
+@State(Scope.Benchmark)
+public class UserAccountServiceMicroBenchmark {
+    private UserAccountService userAccountService;
+    private PasswordSecret passwordSecret;
+
+    @Setup
+    public void setup() {
+        userAccountService = new UserAccountService(null);
+        setField("emailBody", "Please click on this link to activate your account");
+        setField("accountActivateLink", "https://account-rest-service.sonam.cloud/accounts/{authenticationId}/active/{secret}");
+
+        passwordSecret = new PasswordSecret("benchmark", "a1B2c3D4e5", LocalDateTime.now().plusHours(1));
+    }
+
+    @Benchmark
+    public String generateRandomText() {
+        return userAccountService.generateRandomText(10).block();
+    }
+
+    @Benchmark
+    public Email emailValidate() {
+        Email email = new Email("no-reply@sonam.email", "benchmark@sonam.email", "Activation link", "body");
+        email.validate();
+        return email;
+    }
+
+    @Benchmark
+    public String activationLinkBody() {
+        return userAccountService.activationLinkBody("benchmark", passwordSecret);
+    }
+
+    private void setField(String name, String value) {
+        Field field = ReflectionUtils.findField(UserAccountService.class, name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, userAccountService, value);
+    }
+}
@@ -1,15 +1,13 @@
 package me.sonam.account;
 
 import io.r2dbc.spi.ConnectionFactory;
+import me.sonam.account.config.SchemaMigrator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.context.annotation.Bean;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.r2dbc.connection.init.ConnectionFactoryInitializer;
-import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
 
 @EnableDiscoveryClient
 @SpringBootApplication( scanBasePackages = {"me.sonam.account", "me.sonam.security"})
@@ -19,15 +17,11 @@ public class Application {
         SpringApplication.run(Application.class, args);
     }
 
+    /**
+     * applies the scripts in db/migration that are newer than the recorded schema version
+     */
     @Bean
-    ConnectionFactoryInitializer initializer(ConnectionFactory connectionFactory) {
-        ConnectionFactoryInitializer initializer = new ConnectionFactoryInitializer();
-        initializer.setConnectionFactory(connectionFactory);
-        // This will create our database table and schema
-        initializer.setDatabasePopulator(new ResourceDatabasePopulator(new ClassPathResource("schema.sql")));
-
-        // This will drop our table after we are done so we can have a fresh start next run
-        //initializer.setDatabaseCleaner(new ResourceDatabasePopulator(new ClassPathResource("cleanup.sql")));
-        return initializer;
+    SchemaMigrator schemaMigrator(ConnectionFactory connectionFactory) {
+        return new SchemaMigrator(connectionFactory);
     }
 }
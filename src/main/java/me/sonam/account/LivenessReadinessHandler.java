@@ -1,20 +1,48 @@
 package me.sonam.account;
 
+import me.sonam.account.config.MonitoredConnectionPool;
+import me.sonam.account.downstream.DownstreamGuards;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
 /**
- * a basic handler for liveness and readiness endpoints
+ * a basic handler for liveness and readiness endpoints.
+ * Readiness fails when the database connection pool has been exhausted for longer than
+ * the configured threshold so traffic is routed to other instances.  The circuit breaker state of each
+ * downstream service is in the readiness body, a open circuit fails readiness only when turned on as
+ * every instance sees the same downstream outage and would all be taken out of rotation.
  */
 @Controller
 public class LivenessReadinessHandler {
     private static final Logger LOG = LoggerFactory.getLogger(LivenessReadinessHandler.class);
 
+    private final ObjectProvider<MonitoredConnectionPool> connectionPool;
+    private final ObjectProvider<DownstreamGuards> downstreamGuards;
+
+    @Value("${r2dbc-pool.exhausted-threshold:10s}")
+    private Duration exhaustedThreshold;
+
+    @Value("${downstream-guard.not-ready-when-open:false}")
+    private boolean notReadyWhenOpen;
+
+    public LivenessReadinessHandler(ObjectProvider<MonitoredConnectionPool> connectionPool,
+                                    ObjectProvider<DownstreamGuards> downstreamGuards) {
+        this.connectionPool = connectionPool;
+        this.downstreamGuards = downstreamGuards;
+    }
+
     public Mono<ServerResponse> liveness(ServerRequest serverRequest) {
         LOG.debug("liveness check");
         return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).build();
@@ -22,7 +50,32 @@ public class LivenessReadinessHandler {
 
     public Mono<ServerResponse> readiness(ServerRequest serverRequest) {
         LOG.debug("readiness check");
-        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).build();
+        MonitoredConnectionPool monitoredConnectionPool = connectionPool.getIfAvailable();
+
+        if (monitoredConnectionPool != null) {
+            Duration exhaustedFor = monitoredConnectionPool.exhaustedFor();
+
+            if (exhaustedFor.compareTo(exhaustedThreshold) > 0) {
+                LOG.warn("not ready, connection pool has been exhausted for {}", exhaustedFor);
+                return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(Map.of("error", "connection pool exhausted for " + exhaustedFor));
+            }
+        }
+
+        DownstreamGuards guards = downstreamGuards.getIfAvailable();
+
+        if (guards == null) {
+            return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).build();
+        }
+        List<String> openServices = guards.openServices();
+
+        if (notReadyWhenOpen && !openServices.isEmpty()) {
+            LOG.warn("not ready, circuit breaker is open for {}", openServices);
+            return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(Map.of("error", "circuit breaker open for " + String.join(", ", openServices),
+                            "circuitBreakers", guards.states()));
+        }
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("circuitBreakers", guards.states()));
     }
 
 }
@@ -1,14 +1,70 @@
 package me.sonam.account;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Option;
+import io.r2dbc.spi.ValidationDepth;
+import me.sonam.account.config.MonitoredConnectionPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
 
+import java.time.Duration;
+
 @Configuration
 @EnableR2dbcRepositories
 public class R2DBCConfiguration {
     private static final Logger LOG = LoggerFactory.getLogger(R2DBCConfiguration.class);
 
+    /**
+     * connection pool built from the spring.r2dbc url, credentials and pool sizing.
+     * Idle connections are evicted and validated in the background every backgroundEvictionInterval.
+     */
+    @Bean(destroyMethod = "dispose")
+    public MonitoredConnectionPool connectionFactory(R2dbcProperties r2dbcProperties, MeterRegistry meterRegistry,
+                                                     @Value("${r2dbc-pool.background-eviction-interval:30s}") Duration backgroundEvictionInterval) {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(r2dbcProperties.getUrl()).mutate();
+
+        if (r2dbcProperties.getUsername() != null) {
+            options.option(ConnectionFactoryOptions.USER, r2dbcProperties.getUsername());
+        }
+        if (r2dbcProperties.getPassword() != null) {
+            options.option(ConnectionFactoryOptions.PASSWORD, r2dbcProperties.getPassword());
+        }
+        r2dbcProperties.getProperties().forEach((key, value) -> options.option(Option.valueOf(key), value));
+
+        R2dbcProperties.Pool pool = r2dbcProperties.getPool();
+        LOG.info("connection pool initialSize: {}, maxSize: {}, maxIdleTime: {}, maxAcquireTime: {}, backgroundEvictionInterval: {}",
+                pool.getInitialSize(), pool.getMaxSize(), pool.getMaxIdleTime(), pool.getMaxAcquireTime(), backgroundEvictionInterval);
+
+        ConnectionPoolConfiguration.Builder configuration = ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .name("account")
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .backgroundEvictionInterval(backgroundEvictionInterval)
+                .validationDepth(ValidationDepth.REMOTE);
+
+        if (pool.getMaxLifeTime() != null) {
+            configuration.maxLifeTime(pool.getMaxLifeTime());
+        }
+        if (pool.getMaxAcquireTime() != null) {
+            configuration.maxAcquireTime(pool.getMaxAcquireTime());
+        }
+        if (pool.getMaxCreateConnectionTime() != null) {
+            configuration.maxCreateConnectionTime(pool.getMaxCreateConnectionTime());
+        }
+        if (pool.getValidationQuery() != null) {
+            configuration.validationQuery(pool.getValidationQuery());
+        }
 
+        return new MonitoredConnectionPool(new ConnectionPool(configuration.build()), meterRegistry);
+    }
 }
@@ -1,15 +1,24 @@
 package me.sonam.account;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import me.sonam.account.deadline.DeadlineWebFilter;
 import me.sonam.account.handler.AccountHandler;
+import me.sonam.account.limit.ConcurrencyLimitWebFilter;
+import me.sonam.account.limit.KeyedRateLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.server.RouterFunction;
 import org.springframework.web.reactive.function.server.RouterFunctions;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
+import java.time.Duration;
+
 import static org.springframework.web.reactive.function.server.RequestPredicates.*;
 
 /**
@@ -19,33 +28,95 @@ import static org.springframework.web.reactive.function.server.RequestPredicates
 public class Router {
     private static final Logger LOG = LoggerFactory.getLogger(Router.class);
 
+    /**
+     * deadline of the routes, the streaming routes get longer than the default
+     */
+    @Bean
+    public DeadlineWebFilter deadlineWebFilter(MeterRegistry meterRegistry,
+                                               @Value("${deadline.header:X-Request-Timeout}") String header,
+                                               @Value("${deadline.default-timeout:10s}") Duration defaultTimeout,
+                                               @Value("${deadline.stream-timeout:10m}") Duration streamTimeout) {
+        return new DeadlineWebFilter(header, defaultTimeout, meterRegistry)
+                .route(HttpMethod.POST, "/accounts", streamTimeout)
+                .route(HttpMethod.GET, "/accounts/export", streamTimeout);
+    }
+
+    /**
+     * concurrency limit of the route groups, in priority order: reads, then account changes and
+     * activation, then the routes that send email.  Bulk create and export are not limited here.
+     */
     @Bean
-    public RouterFunction<ServerResponse> route(AccountHandler handler) {
+    @ConditionalOnProperty(name = "concurrency-limit.enabled", matchIfMissing = true)
+    public ConcurrencyLimitWebFilter concurrencyLimitWebFilter(MeterRegistry meterRegistry,
+                                                               @Value("${concurrency-limit.initial-limit:20}") int initialLimit,
+                                                               @Value("${concurrency-limit.min-limit:2}") int minLimit,
+                                                               @Value("${concurrency-limit.max-limit:200}") int maxLimit,
+                                                               @Value("${concurrency-limit.backoff-ratio:0.9}") double backoffRatio,
+                                                               @Value("${concurrency-limit.shed-at:0.8}") double shedAt,
+                                                               @Value("${concurrency-limit.retry-after:1s}") Duration retryAfter,
+                                                               @Value("${concurrency-limit.latency.read:250ms}") Duration readLatency,
+                                                               @Value("${concurrency-limit.latency.write:3s}") Duration writeLatency,
+                                                               @Value("${concurrency-limit.latency.email:1s}") Duration emailLatency) {
+        return new ConcurrencyLimitWebFilter(new ConcurrencyLimitWebFilter.Settings(initialLimit, minLimit, maxLimit,
+                backoffRatio, shedAt, retryAfter), meterRegistry)
+                .group("read", readLatency)
+                .group("write", writeLatency)
+                .group("email", emailLatency)
+                .route("read", HttpMethod.GET, "/accounts/{authenticationId}/active")
+                .route("read", HttpMethod.POST, "/accounts/active")
+                .route("read", HttpMethod.GET, "/accounts/{email}/password-secret/{secret}")
+                .route("write", HttpMethod.GET, "/accounts/{authenticationId}/active/{secret}")
+                .route("write", HttpMethod.PUT, "/accounts/password-secret")
+                .route("write", HttpMethod.DELETE, "/accounts/email/{email}")
+                .route("write", HttpMethod.DELETE, "/accounts")
+                .route("email", HttpMethod.POST, "/accounts/{userId}/{authenticationId}/{email}")
+                .route("email", HttpMethod.PUT, "/accounts/active/email/{email}/password-secret")
+                .route("email", HttpMethod.PUT, "/accounts/email/{email}/password-secret")
+                .route("email", HttpMethod.PUT, "/accounts/email/{email}/authentication-id");
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> route(AccountHandler handler, KeyedRateLimiter keyedRateLimiter) {
         LOG.info("building router function");
         return RouterFunctions
                 .route(GET("/accounts/{authenticationId}/active")
                         .and(accept(MediaType.APPLICATION_JSON)), handler::isAccountActive)
 
+                // called by authorization server to check many accounts in one request
+                .andRoute(POST("/accounts/active")
+                        .and(accept(MediaType.APPLICATION_JSON)), handler::areAccountsActive)
+
                 // user will click a link from their inbox that contains a url pointing this
                 // endpoint to activate such as 'http://api-gateway:8080/accounts/test6/active/r5DFO6SFx2'
                 .andRoute(GET("/accounts/{authenticationId}/active/{secret}")
                     .and(accept(MediaType.APPLICATION_JSON)), handler::activateAccount)
 
-                // called by authorization server
-                .andRoute(PUT("/accounts/active/email/{email}/password-secret")
+                // called by authorization server, rate limited per email as each call rotates the secret and sends email
+                .and(RouterFunctions.route(PUT("/accounts/active/email/{email}/password-secret")
                         .and(accept(MediaType.APPLICATION_JSON)), handler::emailActivationLinkUsingEmail)
+                        .filter(keyedRateLimiter.perKey("activation-link", "email")))
 
                 // called by authorization server
-                .andRoute(PUT("/accounts/email/{email}/password-secret")
+                .and(RouterFunctions.route(PUT("/accounts/email/{email}/password-secret")
                         .and(accept(MediaType.APPLICATION_JSON)), handler::emailMySecretUsingEmail)
+                        .filter(keyedRateLimiter.perKey("password-secret", "email")))
 
 
                 .andRoute(POST("/accounts/{userId}/{authenticationId}/{email}")
                         .and(accept(MediaType.APPLICATION_JSON)), handler::createAccount)
 
+                // onboarding, one account per ndjson line and one result line per account
+                .andRoute(POST("/accounts")
+                        .and(contentType(MediaType.APPLICATION_NDJSON)), handler::createAccounts)
+
+                // reporting, streams the accounts as ndjson for a caller with the export authority
+                .andRoute(GET("/accounts/export")
+                        .and(accept(MediaType.APPLICATION_NDJSON)), handler::exportAccounts)
+
                 // called by authorization server
-                .andRoute(PUT("/accounts/email/{email}/authentication-id")
+                .and(RouterFunctions.route(PUT("/accounts/email/{email}/authentication-id")
                         .and(accept(MediaType.APPLICATION_JSON)), handler::sendLoginId)
+                        .filter(keyedRateLimiter.perKey("authentication-id", "email")))
 
                 // user will click on link in email and get directed to authorization server and which will
                 // call this endpoint to start the process from authorization server
@@ -0,0 +1,85 @@
+package me.sonam.account.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Adds a client credentials token from the authorization server to a call that has no Authorization
+ * header yet.  The header filter picks the token by the inbound request, so a call made outside of a
+ * request, like a swept email or a reaped account's delete, would otherwise go out without one.
+ * The token is requested with the {@code background-token.*} client and scopes and reused until
+ * shortly before it expires.
+ */
+public class ClientCredentialsFilter implements ExchangeFilterFunction {
+    private static final Logger LOG = LoggerFactory.getLogger(ClientCredentialsFilter.class);
+
+    // request a new token this long before the current one expires
+    private static final Duration EXPIRY_MARGIN = Duration.ofSeconds(30);
+
+    private record AccessToken(String value, Duration expiresIn) {
+    }
+
+    private final WebClient webClient;
+    private final String tokenEndpoint;
+    private final String grantType;
+    private final String scopes;
+    private final String base64EncodedClientIdSecret;
+    private final Mono<AccessToken> token;
+
+    /**
+     * @param webClientBuilder a builder without the header filter, it is not modified
+     */
+    public ClientCredentialsFilter(WebClient.Builder webClientBuilder, Environment environment) {
+        this.webClient = webClientBuilder.clone().build();
+        this.tokenEndpoint = environment.getRequiredProperty("auth-server.root") + environment.getRequiredProperty("auth-server.oauth2token.path");
+        this.grantType = environment.getProperty("auth-server.oauth2token.grantType", "client_credentials");
+        this.scopes = environment.getProperty("background-token.scopes", "");
+        this.base64EncodedClientIdSecret = environment.getRequiredProperty("background-token.base64EncodedClientIdSecret");
+
+        this.token = Mono.defer(this::requestToken)
+                .cache(accessToken -> max(accessToken.expiresIn().minus(EXPIRY_MARGIN)),
+                        throwable -> Duration.ZERO, () -> Duration.ZERO);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (request.headers().containsKey(HttpHeaders.AUTHORIZATION)) {
+            return next.exchange(request);
+        }
+        return token.flatMap(accessToken -> next.exchange(ClientRequest.from(request)
+                .headers(headers -> headers.setBearerAuth(accessToken.value()))
+                .build()));
+    }
+
+    private Mono<AccessToken> requestToken() {
+        LOG.info("request client credentials token from {}", tokenEndpoint);
+
+        BodyInserters.FormInserter<String> form = BodyInserters.fromFormData("grant_type", grantType);
+        if (!scopes.isBlank()) {
+            form.with("scope", scopes);
+        }
+        return webClient.post().uri(tokenEndpoint)
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + base64EncodedClientIdSecret)
+                .body(form)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .map(map -> new AccessToken(map.get("access_token").toString(),
+                        Duration.ofSeconds(map.get("expires_in") instanceof Number expiresIn ? expiresIn.longValue() : 0)));
+    }
+
+    private static Duration max(Duration duration) {
+        return duration.isNegative() ? Duration.ZERO : duration;
+    }
+}
@@ -0,0 +1,158 @@
+package me.sonam.account.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import me.sonam.account.deadline.Deadline;
+import me.sonam.account.downstream.DownstreamGuard;
+import me.sonam.account.downstream.DownstreamGuards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Long-lived WebClient for each downstream service, built once at startup.
+ * Every service gets its own named Reactor Netty {@link ConnectionProvider} so a slow
+ * service can only exhaust its own pool.  The pool is configured with
+ * {@code <service>.pool.*} properties and exports the reactor.netty.connection.provider
+ * gauges tagged with the service name.  Calls are observed as http.client.requests with the
+ * request observation in the Reactor context as parent, and go through the service's
+ * {@link DownstreamGuard} circuit breaker, bulkhead and response timeout.  A call made for a request
+ * sends the remaining budget of the request's {@link Deadline} in the deadline header and is timed
+ * out at the deadline.  The background clients are for calls made outside of a request, they add the
+ * {@link ClientCredentialsFilter} token when the header filter found no token to send.
+ */
+public class DownstreamWebClients {
+    private static final Logger LOG = LoggerFactory.getLogger(DownstreamWebClients.class);
+
+    public static final String USER_REST_SERVICE = "user-rest-service";
+    public static final String AUTHENTICATION_REST_SERVICE = "authentication-rest-service";
+    public static final String EMAIL_REST_SERVICE = "email-rest-service";
+
+    private final ConnectionProvider userConnectionProvider;
+    private final ConnectionProvider authenticationConnectionProvider;
+    private final ConnectionProvider emailConnectionProvider;
+
+    private final WebClient user;
+    private final WebClient authentication;
+    private final WebClient email;
+    private final WebClient backgroundUser;
+    private final WebClient backgroundAuthentication;
+    private final WebClient backgroundEmail;
+
+    /**
+     * @param webClientBuilder the builder to clone for each service, it is not modified
+     * @param headerFilter filter that forwards the request token to the downstream service
+     * @param clientCredentialsFilter filter that adds a token of its own to a background call without one
+     */
+    public DownstreamWebClients(WebClient.Builder webClientBuilder, ExchangeFilterFunction headerFilter,
+                                ExchangeFilterFunction clientCredentialsFilter, ObservationRegistry observationRegistry,
+                                Environment environment, DownstreamGuards downstreamGuards) {
+        this.userConnectionProvider = connectionProvider(USER_REST_SERVICE, environment);
+        this.authenticationConnectionProvider = connectionProvider(AUTHENTICATION_REST_SERVICE, environment);
+        this.emailConnectionProvider = connectionProvider(EMAIL_REST_SERVICE, environment);
+
+        this.user = webClient(webClientBuilder, headerFilter, observationRegistry, userConnectionProvider, USER_REST_SERVICE, environment, downstreamGuards.get(USER_REST_SERVICE));
+        this.authentication = webClient(webClientBuilder, headerFilter, observationRegistry, authenticationConnectionProvider, AUTHENTICATION_REST_SERVICE, environment, downstreamGuards.get(AUTHENTICATION_REST_SERVICE));
+        this.email = webClient(webClientBuilder, headerFilter, observationRegistry, emailConnectionProvider, EMAIL_REST_SERVICE, environment, downstreamGuards.get(EMAIL_REST_SERVICE));
+
+        ExchangeFilterFunction backgroundFilter = headerFilter.andThen(clientCredentialsFilter);
+        this.backgroundUser = webClient(webClientBuilder, backgroundFilter, observationRegistry, userConnectionProvider, USER_REST_SERVICE, environment, downstreamGuards.get(USER_REST_SERVICE));
+        this.backgroundAuthentication = webClient(webClientBuilder, backgroundFilter, observationRegistry, authenticationConnectionProvider, AUTHENTICATION_REST_SERVICE, environment, downstreamGuards.get(AUTHENTICATION_REST_SERVICE));
+        this.backgroundEmail = webClient(webClientBuilder, backgroundFilter, observationRegistry, emailConnectionProvider, EMAIL_REST_SERVICE, environment, downstreamGuards.get(EMAIL_REST_SERVICE));
+    }
+
+    public WebClient user() {
+        return user;
+    }
+
+    public WebClient authentication() {
+        return authentication;
+    }
+
+    public WebClient email() {
+        return email;
+    }
+
+    public WebClient backgroundUser() {
+        return backgroundUser;
+    }
+
+    public WebClient backgroundAuthentication() {
+        return backgroundAuthentication;
+    }
+
+    public WebClient backgroundEmail() {
+        return backgroundEmail;
+    }
+
+    @PreDestroy
+    public void dispose() {
+        LOG.info("dispose downstream connection pools");
+        userConnectionProvider.dispose();
+        authenticationConnectionProvider.dispose();
+        emailConnectionProvider.dispose();
+    }
+
+    private static ConnectionProvider connectionProvider(String service, Environment environment) {
+        final String prefix = service + ".pool.";
+
+        int maxConnections = environment.getProperty(prefix + "max-connections", Integer.class, 50);
+        int pendingAcquireMaxCount = environment.getProperty(prefix + "pending-acquire-max-count", Integer.class, 100);
+        Duration pendingAcquireTimeout = environment.getProperty(prefix + "pending-acquire-timeout", Duration.class, Duration.ofSeconds(5));
+        Duration maxIdleTime = environment.getProperty(prefix + "max-idle-time", Duration.class, Duration.ofSeconds(30));
+        Duration maxLifeTime = environment.getProperty(prefix + "max-life-time", Duration.class, Duration.ofMinutes(5));
+        Duration evictInBackground = environment.getProperty(prefix + "evict-in-background", Duration.class, Duration.ofSeconds(30));
+
+        LOG.info("{} pool maxConnections: {}, pendingAcquireMaxCount: {}, pendingAcquireTimeout: {}, maxIdleTime: {}, maxLifeTime: {}",
+                service, maxConnections, pendingAcquireMaxCount, pendingAcquireTimeout, maxIdleTime, maxLifeTime);
+
+        return ConnectionProvider.builder(service)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInBackground)
+                .metrics(true)
+                .build();
+    }
+
+    private static ExchangeFilterFunction deadlineFilter(String header) {
+        return (request, next) -> Mono.deferContextual(contextView -> Deadline.of(contextView)
+                .map(deadline -> Deadline.timeout(next.exchange(ClientRequest.from(request)
+                        .header(header, String.valueOf(deadline.remaining().toMillis()))
+                        .build())))
+                .orElseGet(() -> next.exchange(request)));
+    }
+
+    private static WebClient webClient(WebClient.Builder webClientBuilder, ExchangeFilterFunction headerFilter,
+                                       ObservationRegistry observationRegistry, ConnectionProvider connectionProvider, String service,
+                                       Environment environment, DownstreamGuard downstreamGuard) {
+        boolean keepAlive = environment.getProperty(service + ".pool.keep-alive", Boolean.class, true);
+
+        // the guard only times the exchange, the http client timeout also covers reading the body
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .keepAlive(keepAlive)
+                .option(ChannelOption.SO_KEEPALIVE, keepAlive)
+                .responseTimeout(downstreamGuard.getResponseTimeout());
+
+        // the guard goes after the header filter so it does not count the token request
+        return webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter(deadlineFilter(environment.getProperty("deadline.header", "X-Request-Timeout")))
+                .filter(headerFilter)
+                .filter(downstreamGuard.filter())
+                .observationRegistry(observationRegistry)
+                .build();
+    }
+}
@@ -0,0 +1,91 @@
+package me.sonam.account.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The pooled {@link ConnectionFactory} used by the application.
+ * It times every connection acquire as r2dbc.pool.acquire and keeps track of how long the
+ * pool has been exhausted, that is every connection is in use and callers are waiting.
+ * The acquired, idle, pending and allocated gauges are bound by Spring Boot's r2dbc pool
+ * metrics, which finds the pool through {@link #unwrap()}.
+ */
+public class MonitoredConnectionPool implements ConnectionFactory, Wrapped<ConnectionFactory> {
+    private static final Logger LOG = LoggerFactory.getLogger(MonitoredConnectionPool.class);
+
+    private final ConnectionPool connectionPool;
+    private final Timer acquireTimer;
+    private final AtomicLong exhaustedSince = new AtomicLong();
+
+    public MonitoredConnectionPool(ConnectionPool connectionPool, MeterRegistry meterRegistry) {
+        this.connectionPool = connectionPool;
+        this.acquireTimer = Timer.builder("r2dbc.pool.acquire")
+                .description("time to acquire a connection from the pool")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Connection> create() {
+        return Mono.defer(() -> {
+            sample();
+            Timer.Sample sample = Timer.start();
+            return connectionPool.create()
+                    .doOnSuccess(connection -> sample.stop(acquireTimer));
+        });
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return connectionPool.getMetadata();
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return connectionPool;
+    }
+
+    /**
+     * @return how long every connection has been in use with callers waiting for one,
+     * {@link Duration#ZERO} when the pool is not exhausted
+     */
+    public Duration exhaustedFor() {
+        long since = sample();
+        if (since == 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(System.nanoTime() - since);
+    }
+
+    public void dispose() {
+        LOG.info("closing connection pool");
+        connectionPool.dispose();
+    }
+
+    private long sample() {
+        boolean exhausted = connectionPool.getMetrics().map(this::isExhausted).orElse(false);
+
+        if (!exhausted) {
+            exhaustedSince.set(0);
+            return 0;
+        }
+        exhaustedSince.compareAndSet(0, System.nanoTime());
+        return exhaustedSince.get();
+    }
+
+    private boolean isExhausted(PoolMetrics poolMetrics) {
+        return poolMetrics.acquiredSize() >= poolMetrics.getMaxAllocatedSize() && poolMetrics.pendingAcquireSize() > 0;
+    }
+}
@@ -0,0 +1,39 @@
+package me.sonam.account.config;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * actuator endpoint at /actuator/observations listing the recent request timelines
+ * kept by {@link RecentObservations}, /actuator/observations/{traceId} returns one of them
+ */
+@Component
+@Endpoint(id = "observations")
+public class ObservationsEndpoint {
+    private final RecentObservations recentObservations;
+
+    public ObservationsEndpoint(RecentObservations recentObservations) {
+        this.recentObservations = recentObservations;
+    }
+
+    @ReadOperation
+    public Map<String, List<RecentObservations.Sample>> traces() {
+        return recentObservations.byTrace();
+    }
+
+    @ReadOperation
+    public Map<String, List<RecentObservations.Sample>> trace(@Selector String traceId) {
+        Map<String, List<RecentObservations.Sample>> trace = new LinkedHashMap<>();
+        List<RecentObservations.Sample> samples = recentObservations.byTrace().get(traceId);
+        if (samples != null) {
+            trace.put(traceId, samples);
+        }
+        return trace;
+    }
+}
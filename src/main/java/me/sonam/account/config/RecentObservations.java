@@ -0,0 +1,93 @@
+package me.sonam.account.config;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the last observations in memory so a request's timeline of database and downstream
+ * calls can be looked at without a tracing backend.  Every observation is stamped with the
+ * id of its root observation, normally the server request, and stored in a fixed size ring
+ * buffer when it stops.  Read them through the observations actuator endpoint.
+ */
+@Component
+public class RecentObservations implements ObservationHandler<Observation.Context> {
+    private static final String TRACE_ID = RecentObservations.class.getName() + ".traceId";
+    private static final String STARTED = RecentObservations.class.getName() + ".started";
+
+    private final AtomicReferenceArray<Sample> samples;
+    private final AtomicLong position = new AtomicLong();
+
+    public RecentObservations(@Value("${observations.local.size:2000}") int size) {
+        this.samples = new AtomicReferenceArray<>(size);
+    }
+
+    public record Sample(String traceId, String name, String contextualName, Map<String, String> tags,
+                         Instant start, long startNanos, long durationMicros, String error) {
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        Observation.ContextView parent = context.getParentObservation() != null
+                ? context.getParentObservation().getContextView() : null;
+        String traceId = parent != null ? parent.get(TRACE_ID) : null;
+
+        context.put(TRACE_ID, traceId != null ? traceId : UUID.randomUUID().toString());
+        context.put(STARTED, new long[] {System.currentTimeMillis(), System.nanoTime()});
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        long[] started = context.get(STARTED);
+        if (started == null) {
+            return;
+        }
+        Map<String, String> tags = new LinkedHashMap<>();
+        for (KeyValue keyValue : context.getLowCardinalityKeyValues()) {
+            tags.put(keyValue.getKey(), keyValue.getValue());
+        }
+        String error = context.getError() != null ? context.getError().getClass().getSimpleName() : null;
+
+        Sample sample = new Sample(context.get(TRACE_ID), context.getName(), context.getContextualName(), tags,
+                Instant.ofEpochMilli(started[0]), started[1], (System.nanoTime() - started[1]) / 1000, error);
+        samples.set((int) (position.getAndIncrement() % samples.length()), sample);
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return true;
+    }
+
+    /**
+     * @return the observations still in the buffer grouped by root observation, most recent first
+     */
+    public Map<String, List<Sample>> byTrace() {
+        List<Sample> all = new ArrayList<>(samples.length());
+        for (int i = 0; i < samples.length(); i++) {
+            Sample sample = samples.get(i);
+            if (sample != null) {
+                all.add(sample);
+            }
+        }
+        all.sort(Comparator.comparingLong(Sample::startNanos).reversed());
+
+        return all.stream().collect(Collectors.groupingBy(Sample::traceId, LinkedHashMap::new,
+                Collectors.collectingAndThen(Collectors.toList(), list -> {
+                    list.sort(Comparator.comparingLong(Sample::startNanos));
+                    return list;
+                })));
+    }
+}
@@ -0,0 +1,103 @@
+package me.sonam.account.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import me.sonam.account.deadline.Deadline;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Observe every call of the R2DBC repositories as account.repository, tagged with the repository and method.
+ * The observation picks up its parent from the Reactor context, so the repository calls made while
+ * handling a request show up under the server request observation next to the outbound WebClient calls.
+ * Calls made for a request are also timed out at the request's {@link Deadline}.
+ */
+@Configuration
+public class RepositoryObservationConfig {
+    public static final String REPOSITORY_OBSERVATION = "account.repository";
+    static final int POST_PROCESSOR_ORDER = 0;
+
+    @Bean
+    public static BeanPostProcessor repositoryObservationPostProcessor(ObjectProvider<ObservationRegistry> observationRegistry) {
+        return new RepositoryObservationPostProcessor(observationRegistry);
+    }
+
+    private static class RepositoryObservationPostProcessor implements BeanPostProcessor, Ordered {
+        private final ObjectProvider<ObservationRegistry> observationRegistry;
+
+        RepositoryObservationPostProcessor(ObjectProvider<ObservationRegistry> observationRegistry) {
+            this.observationRegistry = observationRegistry;
+        }
+
+        @Override
+        public Object postProcessBeforeInitialization(Object bean, String beanName) {
+            if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> repositoryFactoryBean) {
+                repositoryFactoryBean.addRepositoryFactoryCustomizer(repositoryFactory ->
+                        repositoryFactory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) -> {
+                            String repository = repositoryInformation.getRepositoryInterface().getSimpleName();
+                            proxyFactory.addAdvice(new DeadlineInterceptor());
+                            proxyFactory.addAdvice(new ObservingInterceptor(repository, observationRegistry));
+                        }));
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return POST_PROCESSOR_ORDER;
+        }
+    }
+
+    private static class DeadlineInterceptor implements MethodInterceptor {
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Object result = invocation.proceed();
+
+            if (result instanceof Mono<?> mono) {
+                return Deadline.timeout(mono);
+            }
+            if (result instanceof Flux<?> flux) {
+                return Deadline.timeout(flux);
+            }
+            return result;
+        }
+    }
+
+    private static class ObservingInterceptor implements MethodInterceptor {
+        private final String repository;
+        private final ObjectProvider<ObservationRegistry> observationRegistry;
+
+        ObservingInterceptor(String repository, ObjectProvider<ObservationRegistry> observationRegistry) {
+            this.repository = repository;
+            this.observationRegistry = observationRegistry;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Object result = invocation.proceed();
+            String method = invocation.getMethod().getName();
+
+            if (result instanceof Mono<?> mono) {
+                return mono.name(REPOSITORY_OBSERVATION).tag("repository", repository).tag("method", method)
+                        .tap(Micrometer.observation(registry()));
+            }
+            if (result instanceof Flux<?> flux) {
+                return flux.name(REPOSITORY_OBSERVATION).tag("repository", repository).tag("method", method)
+                        .tap(Micrometer.observation(registry()));
+            }
+            return result;
+        }
+
+        private ObservationRegistry registry() {
+            return observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP);
+        }
+    }
+}
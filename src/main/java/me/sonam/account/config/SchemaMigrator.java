@@ -0,0 +1,115 @@
+package me.sonam.account.config;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import me.sonam.account.repo.Dialect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.r2dbc.connection.init.ScriptUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the versioned scripts in db/migration/{vendor}/V{version}__{description}.sql at startup.
+ * The applied versions are recorded in schema_version and startup skips the scripts when the
+ * schema is already current.  Statements run in auto-commit mode, one at a time, so PostgreSQL
+ * can build indexes concurrently.  Scripts must be idempotent: two instances starting together may
+ * both run a script, the second one only finds everything in place.
+ */
+public class SchemaMigrator implements InitializingBean {
+    private static final Logger LOG = LoggerFactory.getLogger(SchemaMigrator.class);
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+    private final ConnectionFactory connectionFactory;
+
+    public SchemaMigrator(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        List<Migration> migrations = migrations(Dialect.name(connectionFactory));
+
+        Mono.usingWhen(connectionFactory.create(), connection -> migrate(connection, migrations), Connection::close)
+                .block();
+    }
+
+    private Mono<Void> migrate(Connection connection, List<Migration> migrations) {
+        return execute(connection, "create table if not exists schema_version(version integer primary key, description varchar, installed_on timestamp)")
+                .then(currentVersion(connection))
+                .flatMap(current -> {
+                    List<Migration> pending = migrations.stream().filter(migration -> migration.version > current).toList();
+                    if (pending.isEmpty()) {
+                        LOG.info("schema is current at version {}", current);
+                        return Mono.empty();
+                    }
+                    LOG.info("schema is at version {}, applying {} migrations", current, pending.size());
+                    return Flux.fromIterable(pending).concatMap(migration -> apply(connection, migration)).then();
+                });
+    }
+
+    private Mono<Void> apply(Connection connection, Migration migration) {
+        LOG.info("applying schema version {}: {}", migration.version, migration.description);
+
+        return ScriptUtils.executeSqlScript(connection, migration.resource)
+                .then(Mono.from(connection.createStatement("insert into schema_version(version, description, installed_on) values ($1, $2, $3)")
+                                .bind(0, migration.version)
+                                .bind(1, migration.description)
+                                .bind(2, ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime())
+                                .execute())
+                        .flatMap(result -> Mono.from(result.getRowsUpdated()))
+                        .then()
+                        // only a duplicate version means another instance got there first, anything else fails startup
+                        .onErrorResume(R2dbcDataIntegrityViolationException.class, throwable -> {
+                            LOG.info("schema version {} was recorded by another instance", migration.version);
+                            return Mono.empty();
+                        }));
+    }
+
+    private Mono<Integer> currentVersion(Connection connection) {
+        return Mono.from(connection.createStatement("select max(version) as version from schema_version").execute())
+                .flatMap(result -> Mono.from(result.map((row, rowMetadata) -> {
+                    Number version = row.get("version", Number.class);
+                    return version == null ? 0 : version.intValue();
+                })))
+                .defaultIfEmpty(0);
+    }
+
+    private Mono<Void> execute(Connection connection, String sql) {
+        return Mono.from(connection.createStatement(sql).execute())
+                .flatMap(result -> Mono.from(result.getRowsUpdated()))
+                .then();
+    }
+
+    private static List<Migration> migrations(String vendor) throws IOException {
+        Resource[] resources = new PathMatchingResourcePatternResolver()
+                .getResources("classpath:db/migration/" + vendor + "/V*__*.sql");
+
+        return Arrays.stream(resources)
+                .map(resource -> {
+                    Matcher matcher = SCRIPT_NAME.matcher(resource.getFilename());
+                    if (!matcher.matches()) {
+                        throw new IllegalStateException("migration script is not named V{version}__{description}.sql: " + resource);
+                    }
+                    return new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '), resource);
+                })
+                .sorted(Comparator.comparingInt(Migration::version))
+                .toList();
+    }
+
+    private record Migration(int version, String description, Resource resource) {
+    }
+}
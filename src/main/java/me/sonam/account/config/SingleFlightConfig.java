@@ -0,0 +1,49 @@
+package me.sonam.account.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import me.sonam.account.repo.SingleFlight;
+import me.sonam.account.repo.SingleFlightInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+/**
+ * Share one query between concurrent identical calls of the {@link SingleFlight} repository methods.
+ * Ordered after {@link RepositoryObservationConfig} so the shared query is the innermost advice and each
+ * call is still observed and timed out at its own deadline.
+ */
+@Configuration
+public class SingleFlightConfig {
+
+    @Bean
+    public static BeanPostProcessor singleFlightPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new SingleFlightPostProcessor(meterRegistry);
+    }
+
+    private static class SingleFlightPostProcessor implements BeanPostProcessor, Ordered {
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+
+        SingleFlightPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public Object postProcessBeforeInitialization(Object bean, String beanName) {
+            if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> repositoryFactoryBean) {
+                repositoryFactoryBean.addRepositoryFactoryCustomizer(repositoryFactory ->
+                        repositoryFactory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) ->
+                                proxyFactory.addAdvice(new SingleFlightInterceptor(repositoryInformation.getRepositoryInterface().getSimpleName(),
+                                        meterRegistry::getIfAvailable))));
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return RepositoryObservationConfig.POST_PROCESSOR_ORDER + 1;
+        }
+    }
+}
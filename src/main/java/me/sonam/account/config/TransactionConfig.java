@@ -0,0 +1,31 @@
+package me.sonam.account.config;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+/**
+ * Reactive transaction support for the repository operations that need more than one statement.
+ * Declared here instead of relying on auto-configuration because the test configuration
+ * registers more than one ConnectionFactory.
+ */
+@Configuration
+public class TransactionConfig {
+    private static final Logger LOG = LoggerFactory.getLogger(TransactionConfig.class);
+
+    @Bean
+    public ReactiveTransactionManager transactionManager(ConnectionFactory connectionFactory) {
+        LOG.info("creating r2dbc transaction manager");
+        return new R2dbcTransactionManager(connectionFactory);
+    }
+
+    @Bean
+    public TransactionalOperator transactionalOperator(ReactiveTransactionManager transactionManager) {
+        return TransactionalOperator.create(transactionManager);
+    }
+}
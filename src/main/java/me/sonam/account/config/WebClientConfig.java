@@ -1,5 +1,7 @@
 package me.sonam.account.config;
 
+import io.micrometer.observation.ObservationRegistry;
+import me.sonam.account.downstream.DownstreamGuards;
 import me.sonam.account.handler.UserAccountService;
 import me.sonam.security.headerfilter.ReactiveRequestContextHolder;
 import org.slf4j.Logger;
@@ -8,6 +10,7 @@ import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
 import org.springframework.web.reactive.function.client.WebClient;
 
 @Profile("!localdevtest")
@@ -33,7 +36,15 @@ public class WebClientConfig {
     }
 
     @Bean
-    public UserAccountService userAccountService() {
-        return new UserAccountService(webClientBuilder());
+    public DownstreamWebClients downstreamWebClients(ObservationRegistry observationRegistry, Environment environment,
+                                                     DownstreamGuards downstreamGuards) {
+        LOG.info("returning pooled load balanced webclients for downstream services");
+        return new DownstreamWebClients(webClientBuilder(), reactiveRequestContextHolder().headerFilter(),
+                new ClientCredentialsFilter(webClientBuilderNoFilter(), environment), observationRegistry, environment, downstreamGuards);
+    }
+
+    @Bean
+    public UserAccountService userAccountService(DownstreamWebClients downstreamWebClients) {
+        return new UserAccountService(downstreamWebClients);
     }
 }
\ No newline at end of file
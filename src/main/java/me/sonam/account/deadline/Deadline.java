@@ -0,0 +1,92 @@
+package me.sonam.account.deadline;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The point in time by which a request has to be answered, kept in the Reactor context by
+ * {@link DeadlineWebFilter}.  Work done for the request uses the remaining budget as its timeout
+ * with {@link #timeout(Mono)}, work without a deadline in its context is not limited.  A request that
+ * committed a change its remaining steps have to follow up on marks it with {@link #committed()}, the
+ * filter then lets it finish instead of cancelling it at the deadline.
+ */
+public final class Deadline {
+    public static final Class<Deadline> KEY = Deadline.class;
+
+    private final long deadlineNanos;
+    private volatile boolean exceeded;
+    private volatile boolean committed;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos());
+    }
+
+    public static Optional<Deadline> of(ContextView contextView) {
+        return contextView.getOrEmpty(KEY);
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * true once work of the request was given up on with a {@link DeadlineExceededException}
+     */
+    public boolean wasExceeded() {
+        return exceeded;
+    }
+
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    /**
+     * mark the deadline in the context as committed, the request is no longer cancelled at the deadline
+     * though its calls still time out at it
+     */
+    public static Mono<Void> committed() {
+        return Mono.deferContextual(contextView -> {
+            of(contextView).ifPresent(deadline -> deadline.committed = true);
+            return Mono.empty();
+        });
+    }
+
+    private DeadlineExceededException exceeded() {
+        exceeded = true;
+        return new DeadlineExceededException();
+    }
+
+    /**
+     * time out the Mono when the deadline in its context passes, with a {@link DeadlineExceededException}
+     */
+    public static <T> Mono<T> timeout(Mono<T> mono) {
+        return Mono.deferContextual(contextView -> of(contextView)
+                .map(deadline -> deadline.isExpired() ? Mono.<T>error(deadline.exceeded())
+                        : mono.timeout(deadline.remaining()).onErrorMap(TimeoutException.class, e -> deadline.exceeded()))
+                .orElse(mono));
+    }
+
+    /**
+     * time out the Flux when the deadline in its context passes, with a {@link DeadlineExceededException}
+     */
+    public static <T> Flux<T> timeout(Flux<T> flux) {
+        return Flux.deferContextual(contextView -> of(contextView)
+                .map(deadline -> deadline.isExpired() ? Flux.<T>error(deadline.exceeded())
+                        : flux.take(deadline.remaining()).concatWith(Mono.defer(() -> deadline.isExpired()
+                                ? Mono.error(deadline.exceeded()) : Mono.empty())))
+                .orElse(flux));
+    }
+}
@@ -0,0 +1,12 @@
+package me.sonam.account.deadline;
+
+import me.sonam.account.handler.AccountException;
+
+/**
+ * AccountException for work given up on because the deadline of its request passed
+ */
+public class DeadlineExceededException extends AccountException {
+    public DeadlineExceededException() {
+        super("request deadline exceeded");
+    }
+}
@@ -0,0 +1,126 @@
+package me.sonam.account.deadline;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gives every request a {@link Deadline}: the budget in milliseconds from the inbound header, when the
+ * caller sent one, capped by the timeout of the route, or else the route timeout.  The deadline is put
+ * in the Reactor context where the repository and downstream calls pick it up.  A request that arrives
+ * with no budget left is answered 504 without being handled.  A request still running at its deadline
+ * is cancelled, which cancels its database and downstream calls, and is answered 504, unless it marked
+ * its deadline {@link Deadline#committed()}.  A error response of a request whose work was given up on
+ * with a {@link DeadlineExceededException} is answered 504 too, other error responses are left alone.
+ * Counted as account.deadline.exceeded tagged with where the deadline was noticed.
+ */
+public class DeadlineWebFilter implements WebFilter {
+    private static final Logger LOG = LoggerFactory.getLogger(DeadlineWebFilter.class);
+    private static final byte[] BODY = "{\"error\":\"request deadline exceeded\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final String header;
+    private final Duration defaultTimeout;
+    private final MeterRegistry meterRegistry;
+    private final List<RouteTimeout> routeTimeouts = new ArrayList<>();
+
+    private record RouteTimeout(HttpMethod method, PathPattern pathPattern, Duration timeout) {
+    }
+
+    public DeadlineWebFilter(String header, Duration defaultTimeout, MeterRegistry meterRegistry) {
+        this.header = header;
+        this.defaultTimeout = defaultTimeout;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * use timeout instead of the default for requests of the method and path pattern, the first match wins
+     */
+    public DeadlineWebFilter route(HttpMethod method, String pathPattern, Duration timeout) {
+        routeTimeouts.add(new RouteTimeout(method, PathPatternParser.defaultInstance.parse(pathPattern), timeout));
+        return this;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        Duration budget = budget(exchange);
+
+        if (budget.isZero() || budget.isNegative()) {
+            LOG.info("request arrived with no time left: {} {}", exchange.getRequest().getMethod(), exchange.getRequest().getPath());
+            meterRegistry.counter("account.deadline.exceeded", "stage", "arrival").increment();
+            return gatewayTimeout(exchange.getResponse());
+        }
+        final Deadline deadline = Deadline.after(budget);
+        final ServerHttpResponse response = exchange.getResponse();
+
+        response.beforeCommit(() -> {
+            // the 504 written at the deadline is already counted as cancelled
+            if (deadline.wasExceeded() && response.getStatusCode() != null && response.getStatusCode().isError()
+                    && response.getStatusCode() != HttpStatus.GATEWAY_TIMEOUT) {
+                meterRegistry.counter("account.deadline.exceeded", "stage", "handler").increment();
+                response.setStatusCode(HttpStatus.GATEWAY_TIMEOUT);
+            }
+            return Mono.empty();
+        });
+
+        // a committed request is left to finish, its calls still time out at the deadline
+        Mono<Long> cancelAt = Mono.delay(budget).flatMap(tick -> deadline.isCommitted() ? Mono.never() : Mono.just(tick));
+
+        return chain.filter(exchange)
+                .timeout(cancelAt, Mono.defer(() -> {
+                    LOG.info("cancelled request at its deadline: {} {}", exchange.getRequest().getMethod(), exchange.getRequest().getPath());
+                    meterRegistry.counter("account.deadline.exceeded", "stage", "cancelled").increment();
+                    return response.isCommitted() ? Mono.empty() : gatewayTimeout(response);
+                }))
+                .contextWrite(context -> context.put(Deadline.KEY, deadline));
+    }
+
+    private Duration budget(ServerWebExchange exchange) {
+        Duration timeout = routeTimeout(exchange);
+        String value = exchange.getRequest().getHeaders().getFirst(header);
+
+        if (value == null) {
+            return timeout;
+        }
+        try {
+            Duration callerBudget = Duration.ofMillis(Long.parseLong(value.trim()));
+            return callerBudget.compareTo(timeout) < 0 ? callerBudget : timeout;
+        }
+        catch (NumberFormatException e) {
+            LOG.warn("ignore {} header that is not a number of milliseconds: {}", header, value);
+            return timeout;
+        }
+    }
+
+    private Duration routeTimeout(ServerWebExchange exchange) {
+        for (RouteTimeout routeTimeout : routeTimeouts) {
+            if (routeTimeout.method().equals(exchange.getRequest().getMethod())
+                    && routeTimeout.pathPattern().matches(exchange.getRequest().getPath().pathWithinApplication())) {
+                return routeTimeout.timeout();
+            }
+        }
+        return defaultTimeout;
+    }
+
+    private static Mono<Void> gatewayTimeout(ServerHttpResponse response) {
+        response.setStatusCode(HttpStatus.GATEWAY_TIMEOUT);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        DataBuffer body = response.bufferFactory().wrap(BODY);
+        return response.writeWith(Mono.just(body));
+    }
+}
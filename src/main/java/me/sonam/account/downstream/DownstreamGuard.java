@@ -0,0 +1,75 @@
+package me.sonam.account.downstream;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.netty.handler.timeout.ReadTimeoutException;
+import me.sonam.account.handler.DownstreamUnavailableException;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The circuit breaker, bulkhead and response timeout of one downstream service, applied to
+ * every call of the service's WebClient by {@link #filter()}.
+ */
+public class DownstreamGuard {
+    private final String service;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final Duration responseTimeout;
+
+    public DownstreamGuard(String service, CircuitBreaker circuitBreaker, Bulkhead bulkhead, Duration responseTimeout) {
+        this.service = service;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.responseTimeout = responseTimeout;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public Duration getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    public boolean isOpen() {
+        CircuitBreaker.State state = circuitBreaker.getState();
+        return state == CircuitBreaker.State.OPEN || state == CircuitBreaker.State.FORCED_OPEN;
+    }
+
+    /**
+     * the guard's own timeout or the http client's response timeout, whichever fired first
+     */
+    private static boolean isTimeout(Throwable throwable) {
+        return throwable instanceof TimeoutException
+                || (throwable instanceof WebClientRequestException && throwable.getCause() instanceof ReadTimeoutException);
+    }
+
+    /**
+     * fail the exchange fast when the circuit is open or the bulkhead is full, and give up on it
+     * when the response headers do not arrive within the response timeout
+     */
+    public ExchangeFilterFunction filter() {
+        return (request, next) -> next.exchange(request)
+                .timeout(responseTimeout)
+                .transform(BulkheadOperator.of(bulkhead))
+                .transform(CircuitBreakerOperator.of(circuitBreaker))
+                .onErrorMap(CallNotPermittedException.class,
+                        e -> new DownstreamUnavailableException(service, service + " is unavailable, circuit breaker is open"))
+                .onErrorMap(BulkheadFullException.class,
+                        e -> new DownstreamUnavailableException(service, service + " is busy, too many concurrent calls"))
+                .onErrorMap(DownstreamGuard::isTimeout,
+                        e -> new DownstreamUnavailableException(service, service + " did not respond within " + responseTimeout));
+    }
+}
@@ -0,0 +1,110 @@
+package me.sonam.account.downstream;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static me.sonam.account.config.DownstreamWebClients.AUTHENTICATION_REST_SERVICE;
+import static me.sonam.account.config.DownstreamWebClients.EMAIL_REST_SERVICE;
+import static me.sonam.account.config.DownstreamWebClients.USER_REST_SERVICE;
+
+/**
+ * A {@link DownstreamGuard} for each downstream service.  A guard is configured with
+ * {@code <service>.guard.*} properties falling back to {@code downstream-guard.*}.  A 5xx response,
+ * a connection error or a timeout counts as a failure; once the failure rate over the sliding window
+ * reaches the threshold the circuit opens and calls fail fast until, after wait-in-open, a few probe
+ * calls are let through half-open.  The breaker and bulkhead states are exported as the
+ * resilience4j.circuitbreaker.* and resilience4j.bulkhead.* meters tagged with the service name.
+ */
+@Component
+public class DownstreamGuards {
+    private static final Logger LOG = LoggerFactory.getLogger(DownstreamGuards.class);
+
+    private final Map<String, DownstreamGuard> guards = new LinkedHashMap<>();
+
+    public DownstreamGuards(Environment environment, MeterRegistry meterRegistry) {
+        CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.ofDefaults();
+
+        for (String service : List.of(USER_REST_SERVICE, AUTHENTICATION_REST_SERVICE, EMAIL_REST_SERVICE)) {
+            guards.put(service, guard(service, environment, circuitBreakerRegistry, bulkheadRegistry));
+        }
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+    }
+
+    public DownstreamGuard get(String service) {
+        return guards.get(service);
+    }
+
+    /**
+     * @return the circuit breaker state of each service
+     */
+    public Map<String, String> states() {
+        Map<String, String> states = new LinkedHashMap<>();
+        guards.forEach((service, guard) -> states.put(service, guard.getCircuitBreaker().getState().name()));
+        return states;
+    }
+
+    public List<String> openServices() {
+        return guards.values().stream().filter(DownstreamGuard::isOpen).map(DownstreamGuard::getService).toList();
+    }
+
+    private static DownstreamGuard guard(String service, Environment environment,
+                                         CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry) {
+        Duration responseTimeout = property(environment, service, "response-timeout", Duration.class, Duration.ofSeconds(5));
+        float failureRateThreshold = property(environment, service, "failure-rate-threshold", Float.class, 50f);
+        int slidingWindowSize = property(environment, service, "sliding-window-size", Integer.class, 20);
+        int minimumNumberOfCalls = property(environment, service, "minimum-number-of-calls", Integer.class, 10);
+        Duration waitInOpen = property(environment, service, "wait-in-open", Duration.class, Duration.ofSeconds(30));
+        int halfOpenCalls = property(environment, service, "half-open-calls", Integer.class, 3);
+        int maxConcurrentCalls = property(environment, service, "max-concurrent-calls", Integer.class, 25);
+        Duration maxWait = property(environment, service, "max-wait", Duration.class, Duration.ZERO);
+
+        LOG.info("{} guard responseTimeout: {}, failureRateThreshold: {}, slidingWindowSize: {}, minimumNumberOfCalls: {}, " +
+                        "waitInOpen: {}, halfOpenCalls: {}, maxConcurrentCalls: {}", service, responseTimeout, failureRateThreshold,
+                slidingWindowSize, minimumNumberOfCalls, waitInOpen, halfOpenCalls, maxConcurrentCalls);
+
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(service, CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumNumberOfCalls)
+                .waitDurationInOpenState(waitInOpen)
+                .permittedNumberOfCallsInHalfOpenState(halfOpenCalls)
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .recordResult(result -> result instanceof ClientResponse clientResponse && clientResponse.statusCode().is5xxServerError())
+                .ignoreExceptions(BulkheadFullException.class)
+                .build());
+        circuitBreaker.getEventPublisher().onStateTransition(event ->
+                LOG.warn("{} circuit breaker {}", service, event.getStateTransition()));
+
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead(service, BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(maxWait)
+                .build());
+
+        return new DownstreamGuard(service, circuitBreaker, bulkhead, responseTimeout);
+    }
+
+    private static <T> T property(Environment environment, String service, String name, Class<T> type, T defaultValue) {
+        return environment.getProperty(service + ".guard." + name, type,
+                environment.getProperty("downstream-guard." + name, type, defaultValue));
+    }
+}
@@ -0,0 +1,167 @@
+package me.sonam.account.downstream;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Retry and hedging for idempotent downstream calls only, a call that is not safe to send twice
+ * must not use it.  A 5xx response or a failed connection is retried up to max-attempts with
+ * exponential backoff and full jitter, the wait before retry n is random between 0 and
+ * min(max-backoff, min-backoff * 2^n).  Retries and hedges of a service share a {@link RetryBudget}.
+ * With hedging on, a second attempt is sent when the first has not answered after the p95 latency of
+ * the service and the budget allows it, the first to answer or fail wins.  Every attempt that answers
+ * or fails is timed, a first attempt cut short by its hedge is timed up to that point.  Exports downstream.attempts, downstream.retries,
+ * downstream.retry.budget.exhausted and downstream.hedge.wins tagged with the service.
+ */
+@Component
+public class DownstreamRetry {
+    private static final Logger LOG = LoggerFactory.getLogger(DownstreamRetry.class);
+
+    @Value("${downstream-retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${downstream-retry.min-backoff:100ms}")
+    private Duration minBackoff;
+
+    @Value("${downstream-retry.max-backoff:2s}")
+    private Duration maxBackoff;
+
+    @Value("${downstream-retry.budget.ratio:0.1}")
+    private double budgetRatio;
+
+    @Value("${downstream-retry.budget.max-tokens:10}")
+    private double budgetMaxTokens;
+
+    @Value("${downstream-retry.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    @Value("${downstream-retry.hedge.min-delay:50ms}")
+    private Duration hedgeMinDelay;
+
+    @Value("${downstream-retry.hedge.max-delay:1s}")
+    private Duration hedgeMaxDelay;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+
+    public DownstreamRetry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * retry, and hedge when enabled, a idempotent call to the service, use with {@code transform}
+     */
+    public <T> Function<Mono<T>, Mono<T>> idempotent(String service) {
+        return call -> {
+            Mono<T> attempt = call.doOnSubscribe(subscription -> meterRegistry.counter("downstream.attempts", "service", service).increment());
+            Mono<T> hedged = hedgeEnabled ? hedged(service, attempt) : attempt;
+
+            return Mono.defer(() -> {
+                budget(service).deposit();
+                return hedged.retryWhen(retry(service));
+            });
+        };
+    }
+
+    private <T> Mono<T> hedged(String service, Mono<T> attempt) {
+        Timer latency = Timer.builder("downstream.latency").tag("service", service)
+                .publishPercentiles(0.95)
+                .distributionStatisticExpiry(Duration.ofMinutes(1))
+                .register(meterRegistry);
+
+        return Mono.defer(() -> {
+            Duration delay = hedgeDelay(latency);
+
+            // the slow first attempts are the ones a hedge cuts short, leaving them out would lower the p95
+            Mono<T> first = timed(attempt, latency, true);
+            Mono<T> hedge = Mono.delay(delay)
+                    .then(Mono.defer(() -> {
+                        if (!budget(service).tryWithdraw()) {
+                            LOG.info("retry budget of {} is exhausted, not hedging after {}", service, delay);
+                            meterRegistry.counter("downstream.retry.budget.exhausted", "service", service).increment();
+                            return Mono.<T>never();
+                        }
+                        return timed(attempt, latency, false);
+                    }))
+                    .doOnSuccess(value -> {
+                        LOG.info("hedged {} call after {} answered first", service, delay);
+                        meterRegistry.counter("downstream.hedge.wins", "service", service).increment();
+                    });
+            // the first signal wins so a failure is retried right away instead of waiting on the other attempt
+            return Mono.firstWithSignal(first, hedge);
+        });
+    }
+
+    private <T> Mono<T> timed(Mono<T> attempt, Timer latency, boolean timeCancel) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return attempt.doFinally(signal -> {
+                if (signal != SignalType.CANCEL || timeCancel) {
+                    sample.stop(latency);
+                }
+            });
+        });
+    }
+
+    /**
+     * the p95 latency of the service within min-delay and max-delay, max-delay until there is a p95
+     */
+    private Duration hedgeDelay(Timer latency) {
+        for (ValueAtPercentile valueAtPercentile : latency.takeSnapshot().percentileValues()) {
+            long p95 = (long) valueAtPercentile.value(TimeUnit.MILLISECONDS);
+            if (p95 > 0) {
+                return Duration.ofMillis(Math.max(hedgeMinDelay.toMillis(), Math.min(hedgeMaxDelay.toMillis(), p95)));
+            }
+        }
+        return hedgeMaxDelay;
+    }
+
+    private Retry retry(String service) {
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            Throwable failure = signal.failure();
+
+            if (!isRetryable(failure) || signal.totalRetries() + 1 >= maxAttempts) {
+                return Mono.error(failure);
+            }
+            if (!budget(service).tryWithdraw()) {
+                LOG.warn("retry budget of {} is exhausted, not retrying: {}", service, failure.getMessage());
+                meterRegistry.counter("downstream.retry.budget.exhausted", "service", service).increment();
+                return Mono.error(failure);
+            }
+            long ceiling = Math.min(maxBackoff.toMillis(), minBackoff.toMillis() << Math.min(signal.totalRetries(), 20));
+            Duration backoff = Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+
+            LOG.info("retry {} call in {} after: {}", service, backoff, failure.getMessage());
+            meterRegistry.counter("downstream.retries", "service", service).increment();
+            return Mono.delay(backoff);
+        }));
+    }
+
+    private static boolean isRetryable(Throwable throwable) {
+        if (throwable instanceof WebClientResponseException webClientResponseException) {
+            return webClientResponseException.getStatusCode().is5xxServerError();
+        }
+        return throwable instanceof WebClientRequestException;
+    }
+
+    private RetryBudget budget(String service) {
+        return budgets.computeIfAbsent(service, key -> new RetryBudget(budgetRatio, budgetMaxTokens));
+    }
+}
@@ -0,0 +1,33 @@
+package me.sonam.account.downstream;
+
+/**
+ * Limits retries to a ratio of the calls, so when a service is failing every call the retries
+ * add at most that ratio of load instead of multiplying it.  Every call deposits ratio of a token
+ * and every retry withdraws a whole one, the balance starts at and is capped by maxTokens.
+ */
+class RetryBudget {
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+
+    RetryBudget(double ratio, double maxTokens) {
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+    }
+
+    synchronized void deposit() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    /**
+     * @return false when the budget has no token left for a retry
+     */
+    synchronized boolean tryWithdraw() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
@@ -0,0 +1,7 @@
+package me.sonam.account.handler;
+
+/**
+ * one account to create, a line of the POST /accounts ndjson body
+ */
+public record AccountCreateRequest(String userId, String authenticationId, String email) {
+}
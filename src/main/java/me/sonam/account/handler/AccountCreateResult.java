@@ -0,0 +1,15 @@
+package me.sonam.account.handler;
+
+/**
+ * outcome of a {@link AccountCreateRequest}, a line of the POST /accounts ndjson response
+ */
+public record AccountCreateResult(String authenticationId, String email, String status, String message) {
+    public static final String CREATED = "CREATED";
+    public static final String REJECTED = "REJECTED";
+    public static final String INVALID = "INVALID";
+    public static final String FAILED = "FAILED";
+
+    static AccountCreateResult of(AccountCreateRequest request, String status, String message) {
+        return new AccountCreateResult(request.authenticationId(), request.email(), status, message);
+    }
+}
@@ -0,0 +1,18 @@
+package me.sonam.account.handler;
+
+import me.sonam.account.repo.entity.Account;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * a account as written by the GET /accounts/export ndjson stream
+ */
+public record AccountExport(UUID id, UUID userId, String authenticationId, String email, Boolean active,
+                            LocalDateTime accessDateTime) {
+
+    static AccountExport of(Account account) {
+        return new AccountExport(account.getId(), account.getUserId(), account.getAuthenticationId(), account.getEmail(),
+                account.getActive(), account.getAccessDateTime());
+    }
+}
@@ -2,16 +2,26 @@ package me.sonam.account.handler;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import me.sonam.account.repo.AccountExportQuery;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -26,11 +36,17 @@ public class AccountHandler implements Handler {
     @Autowired
     private UserAccount userAccount;
 
+    @Autowired
+    private RouteMetrics routeMetrics;
+
+    @Value("${accounts-export.authority:SCOPE_account.export}")
+    private String exportAuthority;
+
     @Override
     public Mono<ServerResponse> isAccountActive(ServerRequest serverRequest) {
         LOG.info("isAccountActive");
 
-        return userAccount.isAccountActive(serverRequest.pathVariable("authenticationId")).flatMap(s ->
+        return userAccount.isAccountActive(serverRequest.pathVariable("authenticationId")).transform(routeMetrics.outcome(serverRequest)).flatMap(s ->
                 ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("message", s)))
         .onErrorResume(e -> {
             LOG.error("is account active check failed", e);
@@ -38,10 +54,25 @@ public class AccountHandler implements Handler {
         });
     }
 
+    @Override
+    public Mono<ServerResponse> areAccountsActive(ServerRequest serverRequest) {
+        LOG.info("areAccountsActive");
+
+        return serverRequest.bodyToMono(new ParameterizedTypeReference<List<String>>() {})
+                .switchIfEmpty(Mono.error(new AccountException("authenticationIds are required")))
+                .flatMap(authenticationIds -> userAccount.areAccountsActive(authenticationIds))
+                .transform(routeMetrics.outcome(serverRequest))
+                .flatMap(statuses -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(statuses))
+                .onErrorResume(e -> {
+                    LOG.error("are accounts active check failed: {}", e.getMessage());
+                    return ServerResponse.badRequest().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("error", e.getMessage()));
+                });
+    }
+
     @Override
     public Mono<ServerResponse> activateAccount(ServerRequest serverRequest) {
         LOG.info("activate account");
-        return userAccount.activateAccount(serverRequest).flatMap(s ->
+        return userAccount.activateAccount(serverRequest).transform(routeMetrics.outcome(serverRequest)).flatMap(s ->
                 ServerResponse.ok().contentType(MediaType.TEXT_HTML).bodyValue(s))
                 .onErrorResume(e -> {
                     LOG.error("activate account failed: {}", e.getMessage());
@@ -52,7 +83,7 @@ public class AccountHandler implements Handler {
     @Override
     public Mono<ServerResponse> emailActivationLinkUsingEmail(ServerRequest serverRequest) {
         LOG.info("email activation link handler using email address");
-        return userAccount.emailActivationLinkUsingEmail(serverRequest).flatMap(s ->
+        return userAccount.emailActivationLinkUsingEmail(serverRequest).transform(routeMetrics.outcome(serverRequest)).flatMap(s ->
                         ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("message", s)))
                 .onErrorResume(e -> {
                     LOG.error("email activation link failed, error: {}", e.getMessage());
@@ -63,7 +94,7 @@ public class AccountHandler implements Handler {
     @Override
     public Mono<ServerResponse> emailActivationLink(ServerRequest serverRequest) {
         LOG.info("email activation link handler");
-        return userAccount.emailActivationLink(serverRequest).flatMap(s ->
+        return userAccount.emailActivationLink(serverRequest).transform(routeMetrics.outcome(serverRequest)).flatMap(s ->
                 ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("message", s)))
                 .onErrorResume(e -> {
                     LOG.error("email activation link failed, error: {}", e.getMessage());
@@ -74,7 +105,7 @@ public class AccountHandler implements Handler {
     @Override
     public Mono<ServerResponse> createAccount(ServerRequest serverRequest) {
         LOG.info("create initial account");
-        return userAccount.createAccount(serverRequest).flatMap(s ->
+        return userAccount.createAccount(serverRequest).transform(routeMetrics.outcome(serverRequest)).flatMap(s ->
                 ServerResponse.created(URI.create("/accounts/")).contentType(MediaType.APPLICATION_JSON)
                         .bodyValue(Map.of("message", s)))
                 .onErrorResume(e -> {
@@ -83,10 +114,61 @@ public class AccountHandler implements Handler {
                 });
     }
 
+    @Override
+    public Mono<ServerResponse> createAccounts(ServerRequest serverRequest) {
+        LOG.info("create accounts from ndjson stream");
+
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON)
+                .body(userAccount.createAccounts(serverRequest.bodyToFlux(AccountCreateRequest.class))
+                        .transform(routeMetrics.outcomeMany(serverRequest))
+                        .onErrorResume(e -> {
+                            LOG.error("create accounts stream failed: {}", e.getMessage());
+                            return Flux.just(new AccountCreateResult(null, null, AccountCreateResult.FAILED, e.getMessage()));
+                        }), AccountCreateResult.class);
+    }
+
+    @Override
+    public Mono<ServerResponse> exportAccounts(ServerRequest serverRequest) {
+        LOG.info("export accounts");
+
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(authentication -> authentication.getAuthorities().stream()
+                        .map(GrantedAuthority::getAuthority).anyMatch(exportAuthority::equals))
+                .flatMap(authentication -> Mono.fromCallable(() -> exportQuery(serverRequest)))
+                .flatMap(query -> ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON)
+                        .body(userAccount.exportAccounts(query).transform(routeMetrics.outcomeMany(serverRequest)), AccountExport.class))
+                .switchIfEmpty(Mono.defer(() -> {
+                    LOG.warn("account export requires authority {}", exportAuthority);
+                    return ServerResponse.status(HttpStatus.FORBIDDEN).contentType(MediaType.APPLICATION_JSON)
+                            .bodyValue(Map.of("error", "account export is not allowed"));
+                }))
+                .onErrorResume(e -> {
+                    LOG.error("export accounts failed: {}", e.getMessage());
+                    return ServerResponse.badRequest().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("error", e.getMessage()));
+                });
+    }
+
+    /**
+     * query parameters active=true|false, accessedFrom and accessedTo as ISO local date times and
+     * sort=id|accessDateTime
+     */
+    private AccountExportQuery exportQuery(ServerRequest serverRequest) {
+        Boolean active = serverRequest.queryParam("active").map(Boolean::valueOf).orElse(null);
+        LocalDateTime accessedFrom = serverRequest.queryParam("accessedFrom").map(LocalDateTime::parse).orElse(null);
+        LocalDateTime accessedTo = serverRequest.queryParam("accessedTo").map(LocalDateTime::parse).orElse(null);
+        String sort = serverRequest.queryParam("sort").orElse("id");
+
+        if (!sort.equals("id") && !sort.equals("accessDateTime")) {
+            throw new AccountException("sort must be id or accessDateTime");
+        }
+        return new AccountExportQuery(active, accessedFrom, accessedTo, sort.equals("accessDateTime"));
+    }
+
     @Override
     public Mono<ServerResponse> emailMySecretUsingEmail(ServerRequest serverRequest) {
         LOG.info("email my secret");
-        return userAccount.emailMySecretUsingEmail(serverRequest).flatMap(s ->
+        return userAccount.emailMySecretUsingEmail(serverRequest).transform(routeMetrics.outcome(serverRequest)).flatMap(s ->
                         ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("message", s)))
                 .onErrorResume(e -> {
                     LOG.error("emailMySecret failed, error: {}", e.getMessage());
@@ -97,7 +179,7 @@ public class AccountHandler implements Handler {
     @Override
     public Mono<ServerResponse> emailMySecret(ServerRequest serverRequest) {
         LOG.info("email my secret");
-        return userAccount.emailMySecret(serverRequest).flatMap(s ->
+        return userAccount.emailMySecret(serverRequest).transform(routeMetrics.outcome(serverRequest)).flatMap(s ->
                 ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("message", s)))
                 .onErrorResume(e -> {
                     LOG.error("emailMySecret failed, error: {}", e.getMessage());
@@ -108,7 +190,7 @@ public class AccountHandler implements Handler {
     @Override
     public Mono<ServerResponse> sendLoginId(ServerRequest serverRequest) {
         LOG.info("send login id");
-        return userAccount.sendAuthenticationId(serverRequest).flatMap(s ->
+        return userAccount.sendAuthenticationId(serverRequest).transform(routeMetrics.outcome(serverRequest)).flatMap(s ->
                 ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("message", s)))
                 .onErrorResume(e -> {
                     LOG.error("sengLoginId failed, error: {}", e.getMessage());
@@ -126,7 +208,7 @@ public class AccountHandler implements Handler {
 
         String secret = serverRequest.pathVariable("secret");
 
-        return userAccount.validateEmailLoginSecret(email, secret).flatMap(s ->
+        return userAccount.validateEmailLoginSecret(email, secret).transform(routeMetrics.outcome(serverRequest)).flatMap(s ->
                 ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("message", s)))
                 .onErrorResume(e -> {
                     LOG.error("validateEmailLoginSecret failed, error: {}", e.getMessage());
@@ -138,7 +220,7 @@ public class AccountHandler implements Handler {
     public Mono<ServerResponse> delete(ServerRequest serverRequest) {
         LOG.info("delete account using if password secret has expired and account is false");
 
-        return userAccount.delete(serverRequest).flatMap(s ->
+        return userAccount.delete(serverRequest).transform(routeMetrics.outcome(serverRequest)).flatMap(s ->
                 ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("message", s)))
                 .onErrorResume(e -> {
                     LOG.warn("deleted failed, error: {}", e.getMessage());
@@ -155,7 +237,7 @@ public class AccountHandler implements Handler {
                     final String secret = map.get("secret").toString();
                     final String password = map.get("password").toString();
 
-                    return userAccount.updateAuthenticationPassword(email, secret, password);
+                    return userAccount.updateAuthenticationPassword(email, secret, password).transform(routeMetrics.outcome(serverRequest));
                 })
                 .flatMap(s ->
                     ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("message", s)))
@@ -168,7 +250,7 @@ public class AccountHandler implements Handler {
     @Override
     public Mono<ServerResponse> deleteMyData(ServerRequest serverRequest) {
         LOG.info("delete my data for logged-in user");
-        return userAccount.deleteMyData()
+        return userAccount.deleteMyData().transform(routeMetrics.outcome(serverRequest))
                 .flatMap(s -> {
                     LOG.info("response message: {}", s);
                  return   ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(Map.of("message", s));
@@ -0,0 +1,18 @@
+package me.sonam.account.handler;
+
+/**
+ * AccountException for a failed call to another service such as
+ * user-rest-service or authentication-rest-service
+ */
+public class DownstreamServiceException extends AccountException {
+    private final String service;
+
+    public DownstreamServiceException(String service, String message) {
+        super(message);
+        this.service = service;
+    }
+
+    public String getService() {
+        return service;
+    }
+}
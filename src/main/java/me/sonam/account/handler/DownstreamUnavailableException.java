@@ -0,0 +1,11 @@
+package me.sonam.account.handler;
+
+/**
+ * DownstreamServiceException for a call that was not sent, or given up on, because the
+ * service's circuit breaker is open, its bulkhead is full or it did not respond in time
+ */
+public class DownstreamUnavailableException extends DownstreamServiceException {
+    public DownstreamUnavailableException(String service, String message) {
+        super(service, message);
+    }
+}
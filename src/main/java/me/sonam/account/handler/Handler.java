@@ -7,6 +7,7 @@ import reactor.core.publisher.Mono;
 public interface Handler {
     // returns boolean if account is active
     Mono<ServerResponse> isAccountActive(ServerRequest serverRequest);
+    Mono<ServerResponse> areAccountsActive(ServerRequest serverRequest);
     /**
      * if account with userId exists then it will activate account
      * else it will create account and activate it
@@ -17,6 +18,8 @@ public interface Handler {
     Mono<ServerResponse> emailActivationLink(ServerRequest serverRequest);
     Mono<ServerResponse> emailActivationLinkUsingEmail(ServerRequest serverRequest);
     Mono<ServerResponse> createAccount(ServerRequest serverRequest);
+    Mono<ServerResponse> createAccounts(ServerRequest serverRequest);
+    Mono<ServerResponse> exportAccounts(ServerRequest serverRequest);
     Mono<ServerResponse> emailMySecret(ServerRequest serverRequest);
     Mono<ServerResponse> emailMySecretUsingEmail(ServerRequest serverRequest);
     Mono<ServerResponse> sendLoginId(ServerRequest serverRequest);
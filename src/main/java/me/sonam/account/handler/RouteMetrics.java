@@ -0,0 +1,314 @@
+package me.sonam.account.handler;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.RequestPredicate;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Records an account.route timer with percentile histograms and an account.route.active in-flight
+ * gauge for each route of the router functions, tagged with the route as its method and path pattern.
+ * Runs ahead of the other filters so requests answered before reaching a handler, like a 401 or a shed
+ * 503, are timed too.  The timer is tagged with the outcome: ok, rejected for an {@link AccountException}
+ * or a 4xx, downstream_failure for a {@link DownstreamServiceException}, cancelled or error.  The reason tag
+ * carries the AccountException message as a short slug, the service for a downstream failure or the status
+ * of a response without one.  The handler passes its error on with {@link #outcome(ServerRequest)}.
+ * Messages are fixed strings but to keep the number of series bounded only the first maxReasons distinct
+ * reasons are kept, later ones are tagged other.  Requests of no route are not timed.
+ */
+@Component
+public class RouteMetrics implements WebFilter, Ordered {
+    private static final Logger LOG = LoggerFactory.getLogger(RouteMetrics.class);
+
+    private static final String ERROR_ATTRIBUTE = RouteMetrics.class.getName() + ".error";
+    private static final String NONE = "none";
+    private static final String OTHER = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<RouterFunction<?>> routerFunctions;
+    private final int maxReasons;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final Set<String> reasons = ConcurrentHashMap.newKeySet();
+    private volatile List<Route> routes;
+
+    private record Route(HttpMethod method, PathPattern pathPattern, String name) {
+    }
+
+    public RouteMetrics(MeterRegistry meterRegistry, ObjectProvider<RouterFunction<?>> routerFunctions,
+                        @Value("${route-metrics.max-reasons:50}") int maxReasons) {
+        this.meterRegistry = meterRegistry;
+        this.routerFunctions = routerFunctions;
+        this.maxReasons = maxReasons;
+    }
+
+    @Override
+    public int getOrder() {
+        // ahead of the concurrency limit at -200 and the security filter chain at -100
+        return -300;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String route = route(exchange.getRequest().getMethod(), exchange.getRequest().getPath().pathWithinApplication());
+
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+        AtomicInteger active = inFlight(route);
+        active.incrementAndGet();
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        return chain.filter(exchange)
+                .doOnSuccess(unused -> stop(sample, route, exchange))
+                .doOnError(throwable -> stop(sample, route, outcome(throwable), reason(throwable)))
+                .doOnCancel(() -> stop(sample, route, "cancelled", NONE))
+                .doFinally(signalType -> active.decrementAndGet());
+    }
+
+    /**
+     * pass the error of the route on to the timer, use with {@code Mono.transform}
+     */
+    public <T> Function<Mono<T>, Mono<T>> outcome(ServerRequest serverRequest) {
+        return mono -> mono.doOnError(throwable -> serverRequest.exchange().getAttributes().put(ERROR_ATTRIBUTE, throwable));
+    }
+
+    /**
+     * pass the error of a streaming route on to the timer, use with {@code Flux.transform}
+     */
+    public <T> Function<Flux<T>, Flux<T>> outcomeMany(ServerRequest serverRequest) {
+        return flux -> flux.doOnError(throwable -> serverRequest.exchange().getAttributes().put(ERROR_ATTRIBUTE, throwable));
+    }
+
+    private void stop(Timer.Sample sample, String route, ServerWebExchange exchange) {
+        Throwable error = exchange.getAttribute(ERROR_ATTRIBUTE);
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+
+        if (error != null) {
+            stop(sample, route, outcome(error), reason(error));
+        }
+        else if (status == null || !status.isError()) {
+            stop(sample, route, "ok", NONE);
+        }
+        else {
+            HttpStatus httpStatus = HttpStatus.resolve(status.value());
+            String reason = bounded(httpStatus != null ? slug(httpStatus.getReasonPhrase()) : String.valueOf(status.value()));
+            stop(sample, route, status.is4xxClientError() ? "rejected" : "error", reason);
+        }
+    }
+
+    private void stop(Timer.Sample sample, String route, String outcome, String reason) {
+        sample.stop(Timer.builder("account.route")
+                .description("time to handle an account route")
+                .tag("route", route)
+                .tag("outcome", outcome)
+                .tag("reason", reason)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    /**
+     * the first route of the router functions matching the method and path, as "METHOD pattern"
+     */
+    private String route(HttpMethod method, PathContainer path) {
+        for (Route route : routes()) {
+            if (route.method().equals(method) && route.pathPattern().matches(path)) {
+                return route.name();
+            }
+        }
+        return null;
+    }
+
+    // read on first use as the router functions are built from handlers that use this
+    private List<Route> routes() {
+        List<Route> current = routes;
+
+        if (current == null) {
+            List<Route> collected = new ArrayList<>();
+            routerFunctions.orderedStream().forEach(routerFunction -> routerFunction.accept(new RouteCollector(collected)));
+            LOG.info("timing {} routes", collected.size());
+            current = List.copyOf(collected);
+            routes = current;
+        }
+        return current;
+    }
+
+    private AtomicInteger inFlight(String route) {
+        return inFlight.computeIfAbsent(route, key -> {
+            AtomicInteger active = new AtomicInteger();
+            Gauge.builder("account.route.active", active, AtomicInteger::get)
+                    .description("requests of the route being handled")
+                    .tag("route", key)
+                    .register(meterRegistry);
+            return active;
+        });
+    }
+
+    private static String outcome(Throwable throwable) {
+        if (throwable instanceof DownstreamServiceException) {
+            return "downstream_failure";
+        }
+        if (throwable instanceof AccountException) {
+            return "rejected";
+        }
+        return "error";
+    }
+
+    private String reason(Throwable throwable) {
+        if (throwable instanceof DownstreamServiceException downstreamServiceException) {
+            return bounded(downstreamServiceException.getService());
+        }
+        if (throwable instanceof AccountException) {
+            return bounded(slug(throwable.getMessage()));
+        }
+        return bounded(throwable.getClass().getSimpleName());
+    }
+
+    private String bounded(String reason) {
+        if (reason == null || reason.isEmpty()) {
+            return NONE;
+        }
+        if (reasons.contains(reason)) {
+            return reason;
+        }
+        if (reasons.size() >= maxReasons) {
+            LOG.debug("route metrics reason limit reached, tagging '{}' as other", reason);
+            return OTHER;
+        }
+        reasons.add(reason);
+        return reason;
+    }
+
+    static String slug(String message) {
+        if (message == null) {
+            return NONE;
+        }
+        String slug = message.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_").replaceAll("^_|_$", "");
+        return slug.length() > 64 ? slug.substring(0, 64) : slug;
+    }
+
+    private record RouteCollector(List<Route> routes) implements RouterFunctions.Visitor {
+        @Override
+        public void route(RequestPredicate predicate, HandlerFunction<?> handlerFunction) {
+            Set<HttpMethod> methods = new LinkedHashSet<>();
+            List<String> patterns = new ArrayList<>();
+
+            predicate.accept(new RequestPredicates.Visitor() {
+                @Override
+                public void method(Set<HttpMethod> predicateMethods) {
+                    methods.addAll(predicateMethods);
+                }
+
+                @Override
+                public void path(String pattern) {
+                    patterns.add(pattern);
+                }
+
+                @Override
+                public void pathExtension(String extension) {
+                }
+
+                @Override
+                public void header(String name, String value) {
+                }
+
+                @Override
+                public void queryParam(String name, String value) {
+                }
+
+                @Override
+                public void startAnd() {
+                }
+
+                @Override
+                public void and() {
+                }
+
+                @Override
+                public void endAnd() {
+                }
+
+                @Override
+                public void startOr() {
+                }
+
+                @Override
+                public void or() {
+                }
+
+                @Override
+                public void endOr() {
+                }
+
+                @Override
+                public void startNegate() {
+                }
+
+                @Override
+                public void endNegate() {
+                }
+
+                @Override
+                public void unknown(RequestPredicate predicate) {
+                }
+            });
+            for (String pattern : patterns) {
+                for (HttpMethod method : methods) {
+                    routes.add(new Route(method, PathPatternParser.defaultInstance.parse(pattern), method.name() + " " + pattern));
+                }
+            }
+        }
+
+        @Override
+        public void startNested(RequestPredicate predicate) {
+        }
+
+        @Override
+        public void endNested(RequestPredicate predicate) {
+        }
+
+        @Override
+        public void resources(Function<ServerRequest, Mono<Resource>> lookupFunction) {
+        }
+
+        @Override
+        public void attributes(Map<String, Object> attributes) {
+        }
+
+        @Override
+        public void unknown(RouterFunction<?> routerFunction) {
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package me.sonam.account.handler;
 
+import me.sonam.account.repo.AccountExportQuery;
 import org.springframework.web.reactive.function.server.ServerRequest;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Map;
+
 public interface UserAccount {
     // returns boolean if account is active
     Mono<String> isAccountActive(String authenticationId);
+    // returns active status by authenticationId, false when there is no account
+    Mono<Map<String, Boolean>> areAccountsActive(List<String> authenticationIds);
     /**
      * if account with userId exists then it will activate account
      * else it will create account and activate it
@@ -19,6 +26,10 @@ public interface UserAccount {
     Mono<String> emailActivationLinkUsingEmail(ServerRequest serverRequest);
     // internal service
     Mono<String> createAccount(ServerRequest serverRequest);
+    // internal service for onboarding many users, one result per request in the same order
+    Flux<AccountCreateResult> createAccounts(Flux<AccountCreateRequest> requests);
+    // reporting, streams every account matching the query
+    Flux<AccountExport> exportAccounts(AccountExportQuery query);
     Mono<String> sendAuthenticationId(ServerRequest serverRequest);
     Mono<String> validateEmailLoginSecret(String email, String secret);
     Mono<String> delete(ServerRequest serverRequest);
@@ -1,22 +1,34 @@
 package me.sonam.account.handler;
 
-import jakarta.annotation.PostConstruct;
-import me.sonam.account.handler.email.Email;
+import me.sonam.account.config.DownstreamWebClients;
+import me.sonam.account.deadline.Deadline;
+import me.sonam.account.downstream.DownstreamRetry;
+import me.sonam.account.handler.email.EmailOutboxDispatcher;
+import me.sonam.account.handler.email.RecentSends;
+import me.sonam.account.repo.AccountCache;
+import me.sonam.account.repo.AccountExportQuery;
+import me.sonam.account.repo.AccountLoader;
+import me.sonam.account.repo.AccountSecret;
 import me.sonam.account.repo.AccountRepository;
+import me.sonam.account.repo.DownstreamCompensationRepository;
 import me.sonam.account.repo.PasswordSecretRepository;
 import me.sonam.account.repo.entity.Account;
+import me.sonam.account.repo.entity.DownstreamCompensation;
+import me.sonam.account.repo.entity.EmailOutbox;
 import me.sonam.account.repo.entity.PasswordSecret;
-import me.sonam.security.headerfilter.ReactiveRequestContextHolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.ReactiveSecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.reactive.function.server.ServerRequest;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.net.URLDecoder;
@@ -25,12 +37,28 @@ import java.nio.charset.Charset;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 
 public class UserAccountService implements UserAccount {
     private static final Logger LOG = LoggerFactory.getLogger(UserAccountService.class);
+    private static final String USER_REST_SERVICE = DownstreamWebClients.USER_REST_SERVICE;
+    private static final String AUTHENTICATION_REST_SERVICE = DownstreamWebClients.AUTHENTICATION_REST_SERVICE;
+    private static final String EMAIL_QUEUED = "email successfully queued";
+    private static final String ACTIVATION_EMAIL = "activation";
+    private static final String PASSWORD_RESET_EMAIL = "password-reset";
+    private static final String SECRET_EMAIL = "secret";
 
     @Value("${user-rest-service.root}${user-rest-service.activate}")
     private String activateUser;
@@ -47,12 +75,6 @@ public class UserAccountService implements UserAccount {
     @Value("${authentication-rest-service.root}${authentication-rest-service.update-no-auth-password}")
     private String updateAuthenticationNoAuthPassword;
 
-    @Value("${email-rest-service.root}${email-rest-service.emails}")
-    private String emailEp;
-
-    @Value("${emailFrom}")
-    private String emailFrom;
-
     @Value("${emailBody}")
     private String emailBody;
 
@@ -68,40 +90,170 @@ public class UserAccountService implements UserAccount {
     @Value("${passwordResetPath}")
     private String passwordResetPath;
 
+    @Value("${accounts-active.max-ids:500}")
+    private int maxActiveLookupIds;
+
+    @Value("${accounts-create.batch-size:200}")
+    private int createBatchSize;
+
+    @Value("${accounts-export.page-size:500}")
+    private int exportPageSize;
+
     @Autowired
     private AccountRepository accountRepository;
 
     @Autowired
     private PasswordSecretRepository passwordSecretRepository;
 
-    private WebClient.Builder webClientBuilder;
     @Autowired
-    private ReactiveRequestContextHolder reactiveRequestContextHolder;
+    private AccountCache accountCache;
 
+    @Autowired
+    private DownstreamCompensationRepository downstreamCompensationRepository;
 
-    public UserAccountService(WebClient.Builder webClientBuilder) {
-        this.webClientBuilder = webClientBuilder;
-    }
+    @Autowired
+    private EmailOutboxDispatcher emailOutboxDispatcher;
 
-    @PostConstruct
-    public void setWebClient() {
-        webClientBuilder.filter(reactiveRequestContextHolder.headerFilter());
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private DownstreamRetry downstreamRetry;
+
+    @Autowired
+    private RecentSends recentSends;
+
+    private final DownstreamWebClients downstreamWebClients;
+
+    public UserAccountService(DownstreamWebClients downstreamWebClients) {
+        this.downstreamWebClients = downstreamWebClients;
     }
 
     @Override
     public Mono<String> isAccountActive(String authenticationId) {
         LOG.info("checking account active status for userId");
 
-        return accountRepository.existsByAuthenticationIdAndActiveTrue(authenticationId)
+        return accountCache.isActive(authenticationId)
                 .flatMap(aBoolean -> Mono.just("Account active status is " + aBoolean.toString()));
     }
 
+    @Override
+    public Mono<Map<String, Boolean>> areAccountsActive(List<String> authenticationIds) {
+        Set<String> ids = new LinkedHashSet<>();
+        authenticationIds.stream().filter(Objects::nonNull).forEach(ids::add);
+        LOG.info("checking account active status for {} authenticationIds", ids.size());
+
+        if (ids.size() > maxActiveLookupIds) {
+            return Mono.error(new AccountException("cannot check more than " + maxActiveLookupIds + " authenticationIds in one request"));
+        }
+
+        return accountCache.findByAuthenticationIds(ids)
+                .collect(() -> {
+                    Map<String, Boolean> statuses = new LinkedHashMap<>();
+                    ids.forEach(id -> statuses.put(id, false));
+                    return statuses;
+                }, (statuses, account) -> statuses.put(account.getAuthenticationId(), Boolean.TRUE.equals(account.getActive())));
+    }
+
     @Override
     public Mono<String> activateAccount(ServerRequest serverRequest) {
         String authenticationId = serverRequest.pathVariable("authenticationId");
         String secret = serverRequest.pathVariable("secret");
         LOG.info("activate account for authenticationId: {}", authenticationId);
 
+        return accountRepository.consumeSecretAndActivate(authenticationId, secret, ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime())
+                .onErrorMap(EmptyResultDataAccessException.class, e -> new AccountException("No account with authenticationId"))
+                .flatMap(activated -> {
+                    if (activated) {
+                        LOG.info("account activated and passwordSecret deleted");
+                        return Mono.just(activated);
+                    }
+                    return activationRejected(authenticationId, secret);
+                })
+                // the secret is gone, the fan-out and reconcile have to run even past the deadline
+                .flatMap(activated -> Deadline.committed().thenReturn(activated))
+                .doOnNext(activated -> {
+                    accountCache.invalidate(authenticationId);
+                    recentSends.forget(authenticationId);
+                })
+                .flatMap(activated -> Mono.zip(
+                        activateDownstream(downstreamWebClients.authentication(), AUTHENTICATION_REST_SERVICE, activateAuthenticationEndpoint.replace("{authenticationId}", authenticationId),
+                                "error on authentication rest service call"),
+                        activateDownstream(downstreamWebClients.user(), USER_REST_SERVICE, activateUser.replace("{authenticationId}", authenticationId),
+                                "error on activate user rest service call")))
+                .flatMap(results -> reconcileActivation(authenticationId, results.getT1(), results.getT2()))
+                .thenReturn("<html><head><title>account activated</title></head><body><p>Your account is activated." +
+                        "  You can go to your app or go to <a href=\""+authManagerAppUrl+"\">Auth manager</a></p></body></html>");
+    }
+
+    /**
+     * send the activate put to a downstream service, the outcome is returned as a value
+     * instead of an error so both calls of the fan-out always complete.  The put is idempotent
+     * so a transient failure is retried, the secret has already been consumed at this point.
+     */
+    private Mono<DownstreamResult> activateDownstream(WebClient webClient, String service, String endpoint, String errorPrefix) {
+        LOG.info("send activate webrequest to {}: {}", service, endpoint);
+
+        return webClient.put().uri(endpoint).retrieve().bodyToMono(String.class)
+                .transform(downstreamRetry.idempotent(service))
+                .defaultIfEmpty("")
+                .map(response -> {
+                    LOG.info("activation response from {} is: {}", service, response);
+                    return new DownstreamResult(service, response, null);
+                })
+                .onErrorResume(throwable -> {
+                    StringBuilder errorMessage = new StringBuilder(errorPrefix);
+
+                    if (throwable instanceof DownstreamUnavailableException downstreamUnavailableException) {
+                        LOG.error("{} not called: {}", service, throwable.getMessage());
+                        return Mono.just(new DownstreamResult(service, null, downstreamUnavailableException));
+                    }
+                    if (throwable instanceof WebClientResponseException webClientResponseException) {
+                        LOG.error("error body contains: {}", webClientResponseException.getResponseBodyAsString());
+                        errorMessage.append(", error: ").append(webClientResponseException.getResponseBodyAsString());
+                    }
+                    else {
+                        errorMessage.append("error: ").append(throwable.getMessage());
+                    }
+                    LOG.error("error on {} call {}", service, errorMessage, throwable);
+                    return Mono.just(new DownstreamResult(service, null, new DownstreamServiceException(service, errorMessage.toString())));
+                });
+    }
+
+    /**
+     * record every activation that failed so the services can be reconciled with the account, which is
+     * already active.  The request fails with the error of the failed service, the authentication one
+     * when both failed.
+     */
+    private Mono<String> reconcileActivation(String authenticationId, DownstreamResult authentication, DownstreamResult user) {
+        if (authentication.succeeded() && user.succeeded()) {
+            return Mono.just(user.response());
+        }
+        List<DownstreamResult> failed = Stream.of(authentication, user).filter(result -> !result.succeeded()).toList();
+        LOG.warn("activation for authenticationId: {} failed on {}", authenticationId,
+                failed.stream().map(DownstreamResult::service).toList());
+        LocalDateTime now = ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+
+        // the record is needed most when the deadline has passed, so it is saved without one
+        return Flux.fromIterable(failed)
+                .concatMap(result -> downstreamCompensationRepository.save(new DownstreamCompensation(authenticationId, result.service(),
+                        "activate", result.error().getMessage(), now)))
+                .contextWrite(context -> context.delete(Deadline.KEY))
+                .doOnNext(compensation -> LOG.info("saved compensation record: {}", compensation))
+                .then(Mono.error(failed.get(0).error()));
+    }
+
+    private record DownstreamResult(String service, String response, DownstreamServiceException error) {
+        boolean succeeded() {
+            return error == null;
+        }
+    }
+
+    /**
+     * when the secret could not be consumed find out why, checked in the same order as before
+     * so the caller gets the same error
+     */
+    private Mono<Boolean> activationRejected(String authenticationId, String secret) {
         return accountRepository.existsByAuthenticationId(authenticationId)
                 .filter(aBoolean -> aBoolean)
                 .switchIfEmpty(Mono.error(new AccountException("No account with authenticationId")))
@@ -110,84 +262,11 @@ public class UserAccountService implements UserAccount {
                 .flatMap(passwordSecret -> {
                     if (!passwordSecret.getSecret().equals(secret)) {
                         LOG.error("secret does not match from database: {} vs passed: {}", passwordSecret.getSecret(), secret);
-                         return Mono.error(new AccountException("secret does not match"));
-                    }
-                    else if (passwordSecret.getExpireDate().isBefore(ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime())) {
-                        LOG.error("secret has expired");
-                         return Mono.error(new AccountException("secret has expired"));
-                    }
-                    else {
-                        LOG.info("delete passwordSecret after validation");
-                        return passwordSecretRepository.deleteById(authenticationId)
-                                .then(accountRepository.findByAuthenticationId(authenticationId));
-                    }
-                })
-                .switchIfEmpty(Mono.error(new AccountException("No account with authenticationId")))
-                .doOnNext(account -> {
-                    if (!account.getActive()){
-                        account.setActive(true);
-                        account.setAccessDateTime(LocalDateTime.now());
-                        account.setNewAccount(false);
-                        LOG.info("set account to active if not");
-                        LOG.info("set account to active if not");
-                    }
-                    else {
-                        LOG.info("account was active from before");
+                        return Mono.error(new AccountException("secret does not match"));
                     }
-                })
-                .flatMap(account -> {
-                    LOG.info("saving account: {}", account.toString());
-                    return accountRepository.save(account);
-                })
-                .flatMap(account -> {
-                    String endpoint = activateAuthenticationEndpoint.replace("{authenticationId}", authenticationId);
-                    //StringBuilder stringBuilder = new StringBuilder(activateAuthenticationEndpoint).append(authenticationId);
-                    LOG.info("send activate webrequest to authentication-rest-service: {}", endpoint);
-                    WebClient.ResponseSpec spec = webClientBuilder.build().put().uri(endpoint).retrieve();
-
-                    return spec.bodyToMono(String.class).flatMap(s -> {
-                        LOG.info("activation response from authentication-rest-service is: {}", s);
-                        return Mono.just(s);
-                    }).onErrorResume(throwable -> {
-                        StringBuilder errorMessage = new StringBuilder("error on authentication rest service call");
-
-                        if (throwable instanceof WebClientResponseException) {
-                            WebClientResponseException webClientResponseException = (WebClientResponseException) throwable;
-                            LOG.error("error body contains: {}", webClientResponseException.getResponseBodyAsString());
-                            errorMessage = errorMessage.append(", error: ").append(webClientResponseException.getResponseBodyAsString());
-                        }
-                        else {
-                            errorMessage.append("error: ").append(throwable.getMessage());
-                        }
-                        return Mono.error(new AccountException(errorMessage.toString()));
-                    });
-                })
-                .flatMap(account -> {
-                    String endpoint = activateUser.replace("{authenticationId}", authenticationId);
-                    LOG.info("send activate webrequest to user-rest-service: {}", endpoint);
-                    WebClient.ResponseSpec spec = webClientBuilder.build().put().uri(endpoint).retrieve();
-
-                    return spec.bodyToMono(String.class).flatMap(s -> {
-                        LOG.info("activation response from user-rest-service is: {}", s);
-                        return Mono.just(s);
-                    }).onErrorResume(throwable -> {
-                        StringBuilder errorMessage = new StringBuilder("error on activate user rest service call");
-
-                        if (throwable instanceof WebClientResponseException) {
-                            WebClientResponseException webClientResponseException = (WebClientResponseException) throwable;
-                            LOG.error("error body contains: {}", webClientResponseException.getResponseBodyAsString());
-                            errorMessage.append(", error: ").append(webClientResponseException.getResponseBodyAsString());
-                        }
-                        else {
-                            errorMessage.append("error: ").append(throwable.getMessage());
-                        }
-                        LOG.error("error on user rest service call {}", errorMessage, throwable);
-                        return Mono.error(new AccountException(errorMessage.toString()));
-
-                    });
-                })
-                .thenReturn("<html><head><title>account activated</title></head><body><p>Your account is activated." +
-                        "  You can go to your app or go to <a href=\""+authManagerAppUrl+"\">Auth manager</a></p></body></html>");
+                    LOG.error("secret has expired");
+                    return Mono.error(new AccountException("secret has expired"));
+                });
     }
 
     @Override
@@ -196,41 +275,22 @@ public class UserAccountService implements UserAccount {
         String email = URLDecoder.decode(urlEncodedEmail, Charset.defaultCharset());
         LOG.info("email activation link for {}", email);
 
-        return accountRepository.findByEmail(email)
+        return AccountLoader.current(accountCache)
+                .flatMap(accountLoader -> accountLoader.findByEmail(email))
                 .switchIfEmpty(Mono.error(new AccountException("no account with email")))
                 .flatMap(account -> {
-            LOG.info("delete from passwordSecret repo if there is any by authenticationId: {}", account.getAuthenticationId());
-            return emailByAuth(account);
-        });
+                    LOG.info("delete from passwordSecret repo if there is any by authenticationId: {}", account.getAuthenticationId());
+                    return emailByAuth(account);
+                })
+                .contextWrite(AccountLoader.inContext(accountCache));
     }
 
     private Mono<String> emailByAuth(Account account) {
         LOG.info("use account mono to send email");
 
-            return passwordSecretRepository.deleteById(account.getAuthenticationId())
-                    .thenReturn("deleted")
-                    .flatMap(unused -> generateRandomText(10))
-                    .flatMap(randomText -> Mono.just(new PasswordSecret(account.getAuthenticationId(), randomText,
-                            ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime().plusHours(secretExpiresInHour))))
-                    .flatMap(passwordSecret -> {
-                        LOG.info("passwordSecret created");
-                        return passwordSecretRepository.save(passwordSecret);
-                    })
-                    .map(passwordSecret -> {
-                        LOG.info("before replace: {}", accountActivateLink);
-                        String endpoint = accountActivateLink.replace("{authenticationId}", account.getAuthenticationId())
-                                .replace("{secret}", passwordSecret.getSecret());
-                        LOG.info("accountActiveLink: {}", endpoint);
-                        return new StringBuilder(emailBody).append(" ")
-                                .append(endpoint)
-                                .append("\nMessage sent at UTC time: ").append(ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime());
-
-                    })
-                    .flatMap(stringBuilder -> accountRepository.findByAuthenticationId(account.getAuthenticationId())
-                            .switchIfEmpty(Mono.error(new AccountException("no account with email")))
-                            .zipWith(Mono.just(stringBuilder)))
-                    .flatMap(objects -> email(objects.getT1().getEmail(), "Activation link", objects.getT2().toString()))
-                    .thenReturn("Email activation link has been sent");
+        return issueSecretAndQueueEmail(account.getAuthenticationId(), ACTIVATION_EMAIL, account.getEmail(), "Activation link",
+                        saved -> activationLinkBody(account.getAuthenticationId(), saved))
+                .thenReturn("Email activation link has been sent");
     }
 
 
@@ -240,42 +300,11 @@ public class UserAccountService implements UserAccount {
 
         String authId = serverRequest.pathVariable("authenticationId");
 
-        return accountRepository.existsByAuthenticationIdAndActiveTrue(authId)
-              /*  .filter(aBoolean -> {
-                    LOG.info("aBoolean existsByUserIdAndActiveTrue: {}", aBoolean);
-                    if (aBoolean == true) {
-                        return false;
-                    }
-                    return true;
-                } ) // check if a link was already sent, if it was then return indicating a link has already been sent
-                .switchIfEmpty(Mono.error(new AccountException("Account already exists and is active")))*/
-                .doOnNext(aBoolean -> {
-                    LOG.info("delete from passwordSecret repo if there is any: {}", authId);
-                    passwordSecretRepository.deleteById(authId).subscribe(unused -> LOG.info("delete existing password secret"));
-                })
-                .flatMap(unused -> {
-                    LOG.info("generate random text: {}", unused);
-                    return generateRandomText(10);
-                })
-                .flatMap(randomText -> Mono.just(new PasswordSecret(authId, randomText,
-                        ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime().plusHours(secretExpiresInHour))))
-                .flatMap(passwordSecret -> {
-                    LOG.info("passwordSecret created");
-                    return passwordSecretRepository.save(passwordSecret);
-                })
-                .map(passwordSecret -> {
-                    LOG.info("before replace: {}", accountActivateLink);
-                    String endpoint = accountActivateLink.replace("{authenticationId}", authId)
-                            .replace("{secret}", passwordSecret.getSecret());
-                    LOG.info("accountActiveLink: {}", accountActivateLink);
-                    return new StringBuilder(emailBody).append(" ").append(endpoint)
-                            .append("\nMessage sent at UTC time: ").append(ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime());
-                })
-                .flatMap(stringBuilder -> accountRepository.findByAuthenticationId(authId)
-                        .switchIfEmpty(Mono.error(new AccountException("no account with email")))
-                        .zipWith(Mono.just(stringBuilder)))
-                .flatMap(objects -> email(objects.getT1().getEmail(), "Activation link", objects.getT2().toString()))
-                .thenReturn("Email activation link has been sent");
+        return AccountLoader.current(accountCache)
+                .flatMap(accountLoader -> accountLoader.findByAuthenticationId(authId))
+                .switchIfEmpty(Mono.error(new AccountException("no account with email")))
+                .flatMap(this::emailByAuth)
+                .contextWrite(AccountLoader.inContext(accountCache));
     }
 
     @Override
@@ -285,32 +314,27 @@ public class UserAccountService implements UserAccount {
         String urlDecodedEmail = URLDecoder.decode(email, Charset.defaultCharset());
         LOG.info("urlDecodedEmail: {}, email: {}", urlDecodedEmail, email);
 
-        return accountRepository.findByEmailAndActiveTrue(urlDecodedEmail)
+        return AccountLoader.current(accountCache)
+                .flatMap(accountLoader -> accountLoader.findByEmail(urlDecodedEmail))
+                .filter(account -> Boolean.TRUE.equals(account.getActive()))
                 .switchIfEmpty(Mono.error(new AccountException("Account is not active or does not exist")))
-                .flatMap(this::emailSecret);
+                .flatMap(this::emailSecret)
+                .contextWrite(AccountLoader.inContext(accountCache));
     }
 
     private Mono<String> emailSecret(Account account) {
         LOG.info("email with account object for emailing secret");
-        return generateRandomText(10)
-            .flatMap(string -> Mono.just(new PasswordSecret(account.getAuthenticationId(), string,
-                    ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime().plusHours(secretExpiresInHour))))
-            .flatMap(passwordSecret -> {
-                LOG.info("delete existing if any passwordSecret by authId and save new passwordSecret");
-                return passwordSecretRepository.deleteById(passwordSecret.getAuthenticationId())
-                    .then(passwordSecretRepository.save(passwordSecret));
-            })
-            .map(passwordSecret -> {
-                String endpoint = passwordResetPath.replace("{email}", URLEncoder.encode(account.getEmail(), Charset.defaultCharset())).replace("{secret}", passwordSecret.getSecret());
-
-                return new StringBuilder("Please click on this link to initiate password change: " + endpoint)
-                        .append("\nMessage sent at UTC time: ").append(ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime());
-            })
-            .flatMap(stringBuilder -> accountRepository.findByAuthenticationId(account.getAuthenticationId())
-            .switchIfEmpty(Mono.error(new AccountException("no account with email")))
-            .zipWith(Mono.just(stringBuilder)))
-            .flatMap(objects -> email(objects.getT1().getEmail(),"Your requested information", objects.getT2().toString()));
-}
+        return issueSecretAndQueueEmail(account.getAuthenticationId(), PASSWORD_RESET_EMAIL, account.getEmail(), "Your requested information",
+                    saved -> {
+                        String endpoint = passwordResetPath.replace("{email}", URLEncoder.encode(account.getEmail(), Charset.defaultCharset()))
+                                .replace("{secret}", saved.getSecret());
+
+                        return new StringBuilder("Please click on this link to initiate password change: " + endpoint)
+                                .append("\nMessage sent at UTC time: ").append(ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime())
+                                .toString();
+                    })
+            .thenReturn(EMAIL_QUEUED);
+    }
 
 
     @Override
@@ -318,26 +342,17 @@ public class UserAccountService implements UserAccount {
         LOG.info("email my secret for password reset");
         String authenticationId = serverRequest.pathVariable("authenticationId");
 
-        return accountRepository.existsByAuthenticationIdAndActiveTrue(authenticationId)
-                .filter(aBoolean -> aBoolean) //filter the boolean value to make it empty if false on switchIfEmtpy
+        // the active check and the email come from the same row
+        return AccountLoader.current(accountCache)
+                .flatMap(accountLoader -> accountLoader.findByAuthenticationId(authenticationId))
+                .filter(account -> Boolean.TRUE.equals(account.getActive()))
                 .switchIfEmpty(Mono.error(new AccountException("Account is not active or does not exist")))
-                .flatMap(booleanValue -> {
-                    LOG.info("generate random text");
-                    return generateRandomText(10);
-                })
-                .flatMap(randomText -> Mono.just(new PasswordSecret(authenticationId, randomText,
-                        ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime().plusHours(secretExpiresInHour))))
-                .flatMap(passwordSecret -> {
-                    LOG.info("delete existing if any passwordSecret by authId and save new passwordSecret");
-                    return passwordSecretRepository.deleteById(passwordSecret.getAuthenticationId())
-                            .then(passwordSecretRepository.save(passwordSecret));
-                })
-                .map(passwordSecret -> new StringBuilder("You new secret is: " + passwordSecret.getSecret())
-                        .append("\nMessage sent at UTC time: ").append(ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime()))
-                .flatMap(stringBuilder -> accountRepository.findByAuthenticationId(authenticationId)
-                        .switchIfEmpty(Mono.error(new AccountException("no account with email")))
-                        .zipWith(Mono.just(stringBuilder)))
-                .flatMap(objects -> email(objects.getT1().getEmail(),"Your requested information", objects.getT2().toString()));
+                .flatMap(account -> issueSecretAndQueueEmail(authenticationId, SECRET_EMAIL, account.getEmail(), "Your requested information",
+                        saved -> new StringBuilder("You new secret is: " + saved.getSecret())
+                                .append("\nMessage sent at UTC time: ").append(ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime())
+                                .toString()))
+                .thenReturn(EMAIL_QUEUED)
+                .contextWrite(AccountLoader.inContext(accountCache));
     }
 
     /**
@@ -358,49 +373,244 @@ public class UserAccountService implements UserAccount {
                 .switchIfEmpty(Mono.error(new AccountException("Account is already active with authenticationId")))
                 //delete any previous attempts that is not activated
                 .flatMap(aBoolean -> accountRepository.deleteByAuthenticationIdAndActiveFalse(authenticationId))
+                .doOnNext(integer -> accountCache.invalidate(authenticationId))
                 .flatMap(integer -> accountRepository.existsByEmail(email))
                 .filter(aBoolean -> !aBoolean)
                 .switchIfEmpty(Mono.error(new AccountException("a user with this email already exists")))
                 .flatMap(integer -> Mono.just(new Account(authenticationId, email, false, ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime(), userId)))
                 .flatMap(account -> accountRepository.save(account))
+                .doOnNext(accountCache::invalidate)
                 .flatMap(account -> {
-                    LOG.info("delete from passwordSecret repo if there is any: {}", authenticationId);
-                    return passwordSecretRepository.deleteById(authenticationId).thenReturn("deleted");
-                })
-                .flatMap(s -> {
-                    LOG.info("generate random text: {}", s);
+                    LOG.info("generate random text for authenticationId: {}", authenticationId);
                     return generateRandomText(10);
                 })
                 .flatMap(randomText -> Mono.just(new PasswordSecret(authenticationId, randomText,
                         ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime().plusHours(secretExpiresInHour))))
-                .flatMap(passwordSecret -> {
-                    LOG.info("passwordSecret created");
-                    return passwordSecretRepository.save(passwordSecret);
-                })
-                .map(passwordSecret -> new StringBuilder(emailBody).append(" ")
-                        .append(accountActivateLink.replace("{authenticationId}", authenticationId)
-                                .replace("{secret}", passwordSecret.getSecret()))
-                        .append("\nMessage sent at UTC time: ").append(ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime()))
-                .flatMap(stringBuilder -> email(email,"Activation link", stringBuilder.toString()))
+                .flatMap(passwordSecret -> saveSecretAndQueueEmail(passwordSecret, ACTIVATION_EMAIL, email, "Activation link",
+                        saved -> activationLinkBody(authenticationId, saved)))
                 .then(Mono.just("Account created successfully.  Check email for activating account"));
     }
 
+    /**
+     * Same rules as {@link #createAccount(ServerRequest)} applied to batches of createBatchSize requests.
+     * Each batch is checked against existing accounts with two set-based queries and its accounts, secrets and
+     * activation emails are inserted with multi-row inserts in one transaction.  The next batch is only read
+     * once the results of the previous one are emitted, so a slow reader slows down the request body.
+     */
+    @Override
+    public Flux<AccountCreateResult> createAccounts(Flux<AccountCreateRequest> requests) {
+        return requests.buffer(createBatchSize)
+                .concatMap(this::createAccountBatch, 1);
+    }
+
+    private Flux<AccountCreateResult> createAccountBatch(List<AccountCreateRequest> batch) {
+        LOG.info("create a batch of {} accounts", batch.size());
+
+        AccountCreateResult[] results = new AccountCreateResult[batch.size()];
+        List<Integer> candidates = new ArrayList<>();
+        Set<String> authenticationIds = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+
+        for (int i = 0; i < batch.size(); i++) {
+            AccountCreateRequest request = batch.get(i);
+            String invalid = invalidReason(request);
+
+            if (invalid != null) {
+                results[i] = AccountCreateResult.of(request, AccountCreateResult.INVALID, invalid);
+            }
+            else if (!authenticationIds.add(request.authenticationId())) {
+                results[i] = AccountCreateResult.of(request, AccountCreateResult.REJECTED, "duplicate authenticationId in request");
+            }
+            else if (!emails.add(request.email())) {
+                authenticationIds.remove(request.authenticationId());
+                results[i] = AccountCreateResult.of(request, AccountCreateResult.REJECTED, "duplicate email in request");
+            }
+            else {
+                candidates.add(i);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return Flux.fromArray(results);
+        }
+
+        return Mono.zip(accountRepository.findByAuthenticationIdIn(authenticationIds).collectMap(Account::getAuthenticationId),
+                        accountRepository.findByEmailIn(emails).collectMap(Account::getEmail))
+                .flatMapMany(existing -> {
+                    LocalDateTime now = ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+                    List<Integer> created = new ArrayList<>();
+                    List<String> replaced = new ArrayList<>();
+                    List<Account> accounts = new ArrayList<>();
+                    List<PasswordSecret> passwordSecrets = new ArrayList<>();
+                    List<EmailOutbox> emailOutboxes = new ArrayList<>();
+
+                    for (int i : candidates) {
+                        AccountCreateRequest request = batch.get(i);
+                        Account byAuthenticationId = existing.getT1().get(request.authenticationId());
+                        Account byEmail = existing.getT2().get(request.email());
+
+                        if (byAuthenticationId != null && Boolean.TRUE.equals(byAuthenticationId.getActive())) {
+                            results[i] = AccountCreateResult.of(request, AccountCreateResult.REJECTED, "Account is already active with authenticationId");
+                            continue;
+                        }
+                        // the inactive account of a previous attempt is replaced, so its email does not count
+                        if (byEmail != null && !byEmail.getAuthenticationId().equals(request.authenticationId())) {
+                            results[i] = AccountCreateResult.of(request, AccountCreateResult.REJECTED, "a user with this email already exists");
+                            continue;
+                        }
+                        if (byAuthenticationId != null) {
+                            replaced.add(request.authenticationId());
+                        }
+                        PasswordSecret passwordSecret = new PasswordSecret(request.authenticationId(), randomText(10), now.plusHours(secretExpiresInHour));
+
+                        created.add(i);
+                        accounts.add(new Account(request.authenticationId(), request.email(), false, now, UUID.fromString(request.userId())));
+                        passwordSecrets.add(passwordSecret);
+                        emailOutboxes.add(emailOutboxDispatcher.newEmail(request.email(), "Activation link",
+                                activationLinkBody(request.authenticationId(), passwordSecret)));
+                    }
+                    if (created.isEmpty()) {
+                        return Flux.fromArray(results);
+                    }
+                    List<String> createdIds = accounts.stream().map(Account::getAuthenticationId).toList();
+                    Mono<Integer> deleteReplaced = replaced.isEmpty() ? Mono.just(0)
+                            : accountRepository.deleteByAuthenticationIdInAndActiveFalse(replaced);
+
+                    return deleteReplaced
+                            .then(passwordSecretRepository.deleteByAuthenticationIdIn(createdIds))
+                            .then(accountRepository.insertAccountsWithSecrets(accounts, passwordSecrets))
+                            .then(emailOutboxDispatcher.enqueueAll(emailOutboxes))
+                            .as(transactionalOperator::transactional)
+                            .doOnSuccess(unused -> createdIds.forEach(authenticationId -> {
+                                accountCache.invalidate(authenticationId);
+                                recentSends.forget(authenticationId);
+                            }))
+                            .flatMap(emailOutboxDispatcher::sendAllInBackground)
+                            .doOnNext(unused -> created.forEach(i -> results[i] = AccountCreateResult.of(batch.get(i),
+                                    AccountCreateResult.CREATED, "Account created successfully.  Check email for activating account")))
+                            .onErrorResume(throwable -> {
+                                // most likely a concurrent create of the same account, nothing of the batch was saved
+                                LOG.error("failed to save batch of {} accounts: {}", created.size(), throwable.getMessage());
+                                created.forEach(i -> results[i] = AccountCreateResult.of(batch.get(i),
+                                        AccountCreateResult.FAILED, "account was not created, try again"));
+                                return Mono.empty();
+                            })
+                            .thenMany(Flux.defer(() -> Flux.fromArray(results)));
+                });
+    }
+
+    /**
+     * Reads the accounts a page at a time, each page starting after the last row of the previous one.
+     * The next page is only read when the subscriber asks for more, so at most a page or two are held
+     * in memory, and every page is its own short query outside of a transaction.
+     */
+    @Override
+    public Flux<AccountExport> exportAccounts(AccountExportQuery query) {
+        LOG.info("export accounts with {}, page size: {}", query, exportPageSize);
+
+        return exportPage(query, null)
+                .expand(page -> page.size() < exportPageSize ? Mono.empty() : exportPage(query, page.get(page.size() - 1)))
+                .concatMapIterable(page -> page.stream().map(AccountExport::of).toList());
+    }
+
+    private Mono<List<Account>> exportPage(AccountExportQuery query, Account after) {
+        return accountRepository.findExportPage(query, after, exportPageSize).collectList();
+    }
+
+    private static String invalidReason(AccountCreateRequest request) {
+        if (request.authenticationId() == null || request.authenticationId().isBlank()) {
+            return "authenticationId is required";
+        }
+        if (request.email() == null || request.email().isBlank()) {
+            return "email is required";
+        }
+        if (request.userId() == null) {
+            return "userId is required";
+        }
+        try {
+            UUID.fromString(request.userId());
+            return null;
+        }
+        catch (IllegalArgumentException e) {
+            return "userId is not a uuid";
+        }
+    }
+
     @Override
     public Mono<String> sendAuthenticationId(ServerRequest serverRequest) {
         String urlEncodedEmail = serverRequest.pathVariable("email");
 
         String email = URLDecoder.decode(urlEncodedEmail, Charset.defaultCharset());
         LOG.info("send login-id for email: {}, urlEncodedEmail: {}", email, urlEncodedEmail);
-        Mono<Account> accountMono = accountRepository.findByEmail(email);
-
-        return accountMono
+        return AccountLoader.current(accountCache)
+                .flatMap(accountLoader -> accountLoader.findByEmail(email))
                 .switchIfEmpty(Mono.error(new AccountException("Account does not exist with this authenticationId")))
                 .filter(account -> account.getActive())
                 .switchIfEmpty(Mono.error(new AccountException("Account is not active")))
-                .flatMap(account -> Mono.just(new StringBuilder("Your requested login id "+ account.getAuthenticationId())
-                        .append("\nMessage sent at UTC time: ").append(ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime()))
-                        .zipWith(accountMono))
-                .flatMap(objects -> email(objects.getT2().getEmail(),"Your requested information", objects.getT1().toString()));
+                .flatMap(account -> emailOutboxDispatcher.enqueue(account.getEmail(), "Your requested information",
+                        new StringBuilder("Your requested login id "+ account.getAuthenticationId())
+                                .append("\nMessage sent at UTC time: ").append(ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime())
+                                .toString()))
+                .flatMap(emailOutboxDispatcher::sendInBackground)
+                .thenReturn(EMAIL_QUEUED)
+                .contextWrite(AccountLoader.inContext(accountCache));
+    }
+
+    /**
+     * email a new secret unless the same kind of email was sent within the cooldown, then the secret sent
+     * before is emailed again without writing a new one or nothing is sent, see {@link RecentSends}
+     */
+    private Mono<EmailOutbox> issueSecretAndQueueEmail(String authenticationId, String kind, String emailTo, String subject,
+                                                       Function<PasswordSecret, String> messageBody) {
+        return Mono.defer(() -> {
+            LocalDateTime now = ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+            Optional<PasswordSecret> recent = recentSends.recent(authenticationId, kind, now);
+
+            if (recent.isEmpty()) {
+                return saveSecretAndQueueEmail(new PasswordSecret(authenticationId, randomText(10), now.plusHours(secretExpiresInHour)),
+                        kind, emailTo, subject, messageBody);
+            }
+            if (recentSends.mode() == RecentSends.Mode.ABSORB) {
+                return Mono.empty();
+            }
+            // another instance may have replaced the secret since, only a current one is sent again
+            PasswordSecret passwordSecret = recent.get();
+            return passwordSecretRepository.existsByAuthenticationIdAndSecretAndExpireDateAfter(authenticationId, passwordSecret.getSecret(), now)
+                    .flatMap(current -> {
+                        if (!current) {
+                            LOG.info("{} secret of authenticationId {} was replaced, issue a new one", kind, authenticationId);
+                            recentSends.forget(authenticationId);
+                            return saveSecretAndQueueEmail(new PasswordSecret(authenticationId, randomText(10), now.plusHours(secretExpiresInHour)),
+                                    kind, emailTo, subject, messageBody);
+                        }
+                        return emailOutboxDispatcher.enqueue(emailTo, subject, messageBody.apply(passwordSecret))
+                                .flatMap(emailOutboxDispatcher::sendInBackground);
+                    });
+        });
+    }
+
+    /**
+     * replace any existing secret with this one and queue the email built from it in one transaction.
+     * Once committed the email is sent in the background so the request does not wait on email-rest-service.
+     */
+    private Mono<EmailOutbox> saveSecretAndQueueEmail(PasswordSecret passwordSecret, String kind, String emailTo, String subject,
+                                                      Function<PasswordSecret, String> messageBody) {
+        LOG.info("rotate passwordSecret by authId and queue email");
+
+        return passwordSecretRepository.rotate(passwordSecret)
+                .flatMap(saved -> emailOutboxDispatcher.enqueue(emailTo, subject, messageBody.apply(saved)))
+                .as(transactionalOperator::transactional)
+                .doOnNext(emailOutbox -> recentSends.remember(kind, passwordSecret))
+                .flatMap(emailOutboxDispatcher::sendInBackground);
+    }
+
+    String activationLinkBody(String authenticationId, PasswordSecret passwordSecret) {
+        String endpoint = accountActivateLink.replace("{authenticationId}", authenticationId)
+                .replace("{secret}", passwordSecret.getSecret());
+        LOG.info("accountActiveLink: {}", endpoint);
+
+        return new StringBuilder(emailBody).append(" ").append(endpoint)
+                .append("\nMessage sent at UTC time: ").append(ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime())
+                .toString();
     }
 
     //authId/passwordsecret
@@ -408,26 +618,24 @@ public class UserAccountService implements UserAccount {
     public Mono<String> validateEmailLoginSecret(String email, String secret) {
         LOG.info("validate email login secret for email: {}", email);
 
-        return accountRepository.findByEmail(email)
+        return accountRepository.findAccountSecretByEmail(email)
                 .switchIfEmpty(Mono.error(new AccountException("no account found with email")))
-                .flatMap(account -> validateEmailLoginSecret(account, secret));
+                .flatMap(accountSecret -> validateEmailLoginSecret(accountSecret, secret));
     }
 
-    private Mono<String> validateEmailLoginSecret(Account account, String secret) {
-        LOG.info("use account object to validate password secret");
+    private Mono<String> validateEmailLoginSecret(AccountSecret accountSecret, String secret) {
+        LOG.info("use account secret to validate password secret");
 
-        return passwordSecretRepository.findById(account.getAuthenticationId())
-                .switchIfEmpty(Mono.error(new AccountException("no passwordsecret found with authenticationId")))
-                .flatMap(passwordSecret -> {
-                    if (passwordSecret.getSecret().equals(secret)) {
-                        if (ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime().isAfter(passwordSecret.getExpireDate())) {
-                            return Mono.error(new AccountException("secret has expired"));
-                        }
-                        return Mono.just("passwordsecret matches");
-                    } else {
-                        return Mono.error(new AccountException("secret does not match"));
-                    }
-                });
+        if (!accountSecret.hasSecret()) {
+            return Mono.error(new AccountException("no passwordsecret found with authenticationId"));
+        }
+        if (!accountSecret.secret().equals(secret)) {
+            return Mono.error(new AccountException("secret does not match"));
+        }
+        if (accountSecret.isExpired(ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime())) {
+            return Mono.error(new AccountException("secret has expired"));
+        }
+        return Mono.just("passwordsecret matches");
     }
 
     @Override
@@ -436,73 +644,64 @@ public class UserAccountService implements UserAccount {
         String urlEncodedEmail = serverRequest.pathVariable("email");
         final String email = URLDecoder.decode(urlEncodedEmail, Charset.defaultCharset());
 
-        return accountRepository.findByEmail(email)
+        return accountRepository.findAccountSecretByEmail(email)
                 .switchIfEmpty(Mono.error(new AccountException("no account with email")))
-                .map(Account::getAuthenticationId)
-                .flatMap(authenticationId ->
-                        passwordSecretRepository.findById(authenticationId)
-                        .switchIfEmpty(Mono.error(new AccountException("no passwordSecret with authenticationId")))
-                        .filter(passwordSecret ->
-                                ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime().isAfter(passwordSecret.getExpireDate())
-                        ).switchIfEmpty(Mono.error(new AccountException("password has not expired, can't delete")))
-                        .flatMap(passwordSecret -> accountRepository.existsByAuthenticationIdAndActiveTrue(authenticationId))
-                        .filter(aBoolean -> !aBoolean)
-                        .switchIfEmpty(Mono.error(new AccountException("account is active, can't delete")))
-                        .flatMap(aBoolean -> {
-                                    LOG.info("send request to delete User record with authenticationId: {}", authenticationId);
-                                    StringBuilder stringBuilder = new StringBuilder(deleteUser).append(authenticationId);
-                                    LOG.info("delete user with endpoint: {}", stringBuilder.toString());
-
-                                    return webClientBuilder.build().delete().uri(stringBuilder.toString()).retrieve().bodyToMono(String.class)
-                                            .doOnNext(s -> {
-                                                LOG.info("deleted user with authenticationId: {}, rest response is {}", authenticationId, s);
-                                            }).onErrorResume(throwable -> {
-                                                LOG.error("error occured deleting user record with authenticationId", throwable);
-                                                return Mono.error(new AccountException("failed to delete user"));
-                                            });
-                                }
-                        ).flatMap(s -> {
-                    LOG.info("delete authentication object");
-                    StringBuilder stringBuilder = new StringBuilder(deleteAuthentication).append(authenticationId);
-                    LOG.info("delete authentication with endpoint: {}", stringBuilder.toString());
-
-                    return webClientBuilder.build().delete().uri(stringBuilder.toString()).retrieve().bodyToMono(String.class)
-                            .doOnNext(s2 -> {
-                                LOG.info("deleted authentication with authenticationId: {}, rest response is {}", authenticationId, s2);
-                            }).onErrorResume(throwable -> {
-                                LOG.error("error occured on deletion request", throwable);
-                                return Mono.error(new AccountException("failed to delete authentication"));
+                .flatMap(accountSecret -> {
+                    if (!accountSecret.hasSecret()) {
+                        return Mono.error(new AccountException("no passwordSecret with authenticationId"));
+                    }
+                    if (!accountSecret.isExpired(ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime())) {
+                        return Mono.error(new AccountException("password has not expired, can't delete"));
+                    }
+                    if (accountSecret.active()) {
+                        return Mono.error(new AccountException("account is active, can't delete"));
+                    }
+                    return Mono.just(accountSecret.authenticationId());
+                })
+                .flatMap(authenticationId -> {
+                    LOG.info("send request to delete User record with authenticationId: {}", authenticationId);
+                    StringBuilder userEndpoint = new StringBuilder(deleteUser).append(authenticationId);
+                    LOG.info("delete user with endpoint: {}", userEndpoint.toString());
+
+                    return downstreamWebClients.user().delete().uri(userEndpoint.toString()).retrieve().bodyToMono(String.class)
+                            .doOnNext(s -> {
+                                LOG.info("deleted user with authenticationId: {}, rest response is {}", authenticationId, s);
+                            }).onErrorResume(throwable -> !(throwable instanceof DownstreamUnavailableException), throwable -> {
+                                LOG.error("error occured deleting user record with authenticationId", throwable);
+                                return Mono.error(new DownstreamServiceException(USER_REST_SERVICE, "failed to delete user"));
+                            })
+                            .flatMap(s -> {
+                                LOG.info("delete authentication object");
+                                StringBuilder stringBuilder = new StringBuilder(deleteAuthentication).append(authenticationId);
+                                LOG.info("delete authentication with endpoint: {}", stringBuilder.toString());
+
+                                return downstreamWebClients.authentication().delete().uri(stringBuilder.toString()).retrieve().bodyToMono(String.class)
+                                        .doOnNext(s2 -> {
+                                            LOG.info("deleted authentication with authenticationId: {}, rest response is {}", authenticationId, s2);
+                                        }).onErrorResume(throwable -> !(throwable instanceof DownstreamUnavailableException), throwable -> {
+                                            LOG.error("error occured on deletion request", throwable);
+                                            return Mono.error(new DownstreamServiceException(AUTHENTICATION_REST_SERVICE, "failed to delete authentication"));
+                                        });
+                            })
+                            .flatMap(s -> {
+                                LOG.info("delete passwordSecret if exists for authenticationId: {}", authenticationId);
+                                return accountRepository.deleteByAuthenticationIdAndActiveFalse(authenticationId)
+                                        .then(passwordSecretRepository.deleteById(authenticationId))
+                                        .doOnSuccess(unused -> {
+                                            accountCache.invalidate(authenticationId);
+                                            recentSends.forget(authenticationId);
+                                        })
+                                        .thenReturn("deleted authenticationId that is active false");
                             });
-                }).flatMap(s -> {
-                    LOG.info("delete passwordSecret if exists for authenticationId: {}", authenticationId);
-                    return accountRepository.deleteByAuthenticationIdAndActiveFalse(authenticationId)
-                            .then(passwordSecretRepository.deleteById(authenticationId))
-                            .thenReturn("deleted authenticationId that is active false");
-                }));
-    }
-    private Mono<String> email(String emailTo, String subject, String messageBody) {
-        LOG.info("sending email to {}, subject: {}, body: {}", emailEp, subject, messageBody);
-
-        return webClientBuilder.build().post().uri(emailEp)
-                .bodyValue(new Email(emailFrom, emailTo, subject, messageBody))
-                .retrieve()
-                .bodyToMono(Map.class)
-                .flatMap(map-> {
-                    LOG.info("email response is: {}", map);
-                    return Mono.just(map.get("message").toString());
-                }).onErrorResume(throwable -> {
-                    LOG.error("email failed: {}", throwable.getMessage());
-                    return  Mono.error(new AccountException("Email failed: "+ throwable.getMessage()));
                 });
     }
-
     @Override
     public Mono<String> updateAuthenticationPassword(String email, String secret, final String password) {
         LOG.info("update authentication password: {}", email);
 
-        return accountRepository.findByEmail(email)
+        return accountRepository.findAccountSecretByEmail(email)
                 .switchIfEmpty(Mono.error(new AccountException("there is no account with the given email")))
-                .flatMap(account -> updateAuthenticationPassword(account, secret, password));
+                .flatMap(accountSecret -> updateAuthenticationPassword(accountSecret, secret, password));
     }
 
     @Override
@@ -526,6 +725,10 @@ public class UserAccountService implements UserAccount {
                              LOG.info("got account: {}", account);
                              return accountRepository.deleteByUserId(userId)
                                      .doOnNext(integer -> LOG.info("deleted account with rows: {}", integer))
+                                     .doOnNext(integer -> {
+                                         accountCache.invalidate(account);
+                                         recentSends.forget(account.getAuthenticationId());
+                                     })
                                         .flatMap(integer ->   passwordSecretRepository.deleteByAuthenticationId(account.getAuthenticationId()));
                             }
                     ).doOnNext(unused -> LOG.info("printing {}", unused))
@@ -533,36 +736,32 @@ public class UserAccountService implements UserAccount {
         });
     }
 
-    private Mono<String> updateAuthenticationPassword(Account account, String secret, final String password) {
-        return accountRepository.existsByAuthenticationIdAndActiveTrue(account.getAuthenticationId())
-                .filter(aBoolean -> {
-            LOG.info("exists by authId and active? {}", aBoolean);
-            return  aBoolean;
-        })
-                .switchIfEmpty(Mono.error(new AccountException("account is not active or does not exist")))
-                .flatMap(aBoolean -> {
-                    LOG.info("active?: {}", aBoolean);
-                    //return validateEmailLoginSecret(account.getEmail(), secret);
-                    return validateEmailLoginSecret(account, secret);
-                })
+    private Mono<String> updateAuthenticationPassword(AccountSecret accountSecret, String secret, final String password) {
+        LOG.info("active?: {}", accountSecret.active());
+        if (!accountSecret.active()) {
+            return Mono.error(new AccountException("account is not active or does not exist"));
+        }
+
+        return validateEmailLoginSecret(accountSecret, secret)
                 .flatMap(map2 -> {
 
-                    WebClient.ResponseSpec responseSpec = webClientBuilder.build().put().uri(updateAuthenticationNoAuthPassword)
-                                    .bodyValue(Map.of("authenticationId", account.getAuthenticationId(),
+                    WebClient.ResponseSpec responseSpec = downstreamWebClients.authentication().put().uri(updateAuthenticationNoAuthPassword)
+                                    .bodyValue(Map.of("authenticationId", accountSecret.authenticationId(),
                                             "password", password))
                                     .retrieve();
 
-                    return  passwordSecretRepository.deleteById(account.getAuthenticationId())
+                    return  passwordSecretRepository.deleteById(accountSecret.authenticationId())
+                                    .doOnSuccess(unused -> recentSends.forget(accountSecret.authenticationId()))
                                     .then(
                                             responseSpec.bodyToMono(Map.class).flatMap(map -> {
                                                 LOG.info("response from authentication-rest-service is {}",
                                                         map.get("message"));
                                                 return Mono.just(map.get("message").toString());
-                                            }).onErrorResume(throwable -> {
+                                            }).onErrorResume(throwable -> !(throwable instanceof DownstreamUnavailableException), throwable -> {
                                                 LOG.error("password updated failed when calling authentication-rest-service {}",
                                                         throwable.getMessage());
-                                                return Mono.error(new AccountException("Password update failed: "
-                                                        + throwable.getMessage()));
+                                                return Mono.error(new DownstreamServiceException(AUTHENTICATION_REST_SERVICE,
+                                                        "Password update failed: " + throwable.getMessage()));
                                             })
                                     );
                         }
@@ -577,7 +776,10 @@ public class UserAccountService implements UserAccount {
     public Mono<String> generateRandomText(int n)
     {
         LOG.info("generate random text");
+        return Mono.just(randomText(n));
+    }
 
+    private static String randomText(int n) {
         // chose a Character random from this String
         String alphaNumericString = "ABCDEFGHIJKLMNOPQRSTUVWXYZ"
                 + "0123456789"
@@ -598,7 +800,6 @@ public class UserAccountService implements UserAccount {
                     .charAt(index));
         }
 
-        //return sb.toString();
-        return Mono.just(sb.toString());
+        return sb.toString();
     }
 }
\ No newline at end of file
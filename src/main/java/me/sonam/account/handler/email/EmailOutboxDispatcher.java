@@ -0,0 +1,252 @@
+package me.sonam.account.handler.email;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import me.sonam.account.config.DownstreamWebClients;
+import me.sonam.account.deadline.Deadline;
+import me.sonam.account.repo.EmailOutboxRepository;
+import me.sonam.account.repo.entity.EmailOutbox;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends the emails queued in the Email_Outbox table to email-rest-service.
+ * A queued email is first sent in the background right after its transaction commits, using the
+ * Reactor context of the request that queued it so the outbound token filter still sees the request.
+ * Emails are sent with the background email client, so a swept email that has no request gets the
+ * client credentials token instead.  That first attempt holds a lease on the row; rows whose lease ran
+ * out without being sent are picked up by the periodic sweep, retried with exponential backoff and
+ * marked DEAD after the maximum number of attempts.  Background and sweep sends go through one queue of queue-capacity rows sent with at
+ * most concurrency in flight, a row that finds the queue full keeps its lease and is left to the sweep.
+ */
+@Component
+public class EmailOutboxDispatcher {
+    private static final Logger LOG = LoggerFactory.getLogger(EmailOutboxDispatcher.class);
+
+    @Value("${email-rest-service.root}${email-rest-service.emails}")
+    private String emailEp;
+
+    @Value("${emailFrom}")
+    private String emailFrom;
+
+    @Value("${email-outbox.enabled:true}")
+    private boolean sweepEnabled;
+
+    @Value("${email-outbox.poll-interval:10s}")
+    private Duration pollInterval;
+
+    @Value("${email-outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${email-outbox.concurrency:4}")
+    private int concurrency;
+
+    @Value("${email-outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${email-outbox.backoff:30s}")
+    private Duration backoff;
+
+    @Value("${email-outbox.lease:60s}")
+    private Duration lease;
+
+    @Value("${email-outbox.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final DownstreamWebClients downstreamWebClients;
+    private final Counter sentCounter;
+    private final Counter retryCounter;
+    private final Counter deadCounter;
+    private final Counter deferredCounter;
+    private Sinks.Many<Send> sends;
+    private Disposable sender;
+    private Disposable sweeper;
+
+    private record Send(EmailOutbox emailOutbox, ContextView contextView) {
+    }
+
+    public EmailOutboxDispatcher(EmailOutboxRepository emailOutboxRepository,
+                                 DownstreamWebClients downstreamWebClients,
+                                 MeterRegistry meterRegistry) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.downstreamWebClients = downstreamWebClients;
+        this.sentCounter = meterRegistry.counter("account.email.outbox", "result", "sent");
+        this.retryCounter = meterRegistry.counter("account.email.outbox", "result", "retry");
+        this.deadCounter = meterRegistry.counter("account.email.outbox", "result", "dead");
+        this.deferredCounter = meterRegistry.counter("account.email.outbox", "result", "deferred");
+    }
+
+    @PostConstruct
+    public void startSweeper() {
+        sends = Sinks.many().unicast().onBackpressureBuffer(Queues.<Send>get(queueCapacity).get());
+        // the email is not part of the request, it is sent even after the request's deadline
+        sender = sends.asFlux()
+                .flatMap(send -> send(send.emailOutbox()).contextWrite(context -> context.delete(Deadline.KEY))
+                        .contextWrite(send.contextView())
+                        .onErrorResume(throwable -> {
+                            LOG.error("email outbox send failed", throwable);
+                            return Mono.empty();
+                        }), concurrency)
+                .subscribe();
+
+        if (!sweepEnabled) {
+            LOG.info("email outbox sweeper is disabled");
+            return;
+        }
+        LOG.info("start email outbox sweeper every {}", pollInterval);
+        sweeper = Flux.interval(pollInterval, pollInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> sweep().onErrorResume(throwable -> {
+                    LOG.error("email outbox sweep failed", throwable);
+                    return Mono.empty();
+                }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stopSweeper() {
+        if (sweeper != null) {
+            sweeper.dispose();
+        }
+        if (sender != null) {
+            sender.dispose();
+        }
+    }
+
+    /**
+     * add a email to the outbox, call this inside the transaction that saves the data the email refers to.
+     * The row is leased to the caller so the sweeper leaves it alone while {@link #sendInBackground} runs.
+     */
+    public Mono<EmailOutbox> enqueue(String emailTo, String subject, String messageBody) {
+        LocalDateTime now = now();
+        LOG.info("queue email to {}, subject: {}", emailTo, subject);
+        return emailOutboxRepository.save(new EmailOutbox(emailTo, subject, messageBody, now, now.plus(lease)));
+    }
+
+    /**
+     * build the outbox row for a email, for queueing many of them with {@link #enqueueAll}
+     */
+    public EmailOutbox newEmail(String emailTo, String subject, String messageBody) {
+        LocalDateTime now = now();
+        return new EmailOutbox(emailTo, subject, messageBody, now, now.plus(lease));
+    }
+
+    /**
+     * add many emails to the outbox with multi-row inserts, same as {@link #enqueue} otherwise
+     */
+    public Mono<List<EmailOutbox>> enqueueAll(List<EmailOutbox> emailOutboxes) {
+        LOG.info("queue {} emails", emailOutboxes.size());
+        return emailOutboxRepository.insertAll(emailOutboxes).thenReturn(emailOutboxes);
+    }
+
+    /**
+     * queue committed outbox rows for sending in the background, same as {@link #sendInBackground}
+     */
+    public Mono<List<EmailOutbox>> sendAllInBackground(List<EmailOutbox> emailOutboxes) {
+        return Mono.deferContextual(contextView -> {
+            emailOutboxes.forEach(emailOutbox -> queue(emailOutbox, contextView));
+            return Mono.just(emailOutboxes);
+        });
+    }
+
+    /**
+     * queue a committed outbox row for sending without making the caller wait for email-rest-service
+     */
+    public Mono<EmailOutbox> sendInBackground(EmailOutbox emailOutbox) {
+        return Mono.deferContextual(contextView -> {
+            queue(emailOutbox, contextView);
+            return Mono.just(emailOutbox);
+        });
+    }
+
+    /**
+     * claim the rows that are due and queue them for sending, returns the number of rows this dispatcher
+     * claimed
+     */
+    public Mono<Long> sweep() {
+        LocalDateTime now = now();
+
+        return emailOutboxRepository.findDue(now, batchSize)
+                .flatMap(emailOutbox -> emailOutboxRepository.claim(emailOutbox.getId(), emailOutbox.getNextAttemptAt(), now.plus(lease))
+                        .filter(rows -> rows == 1)
+                        .doOnNext(rows -> queue(emailOutbox, Context.empty()))
+                        .thenReturn(emailOutbox), concurrency)
+                .count()
+                .doOnNext(count -> {
+                    if (count > 0) {
+                        LOG.info("email outbox sweep queued {} emails", count);
+                    }
+                });
+    }
+
+    /**
+     * a row that does not fit in the queue keeps its lease and is sent by the sweep once that runs out
+     */
+    private void queue(EmailOutbox emailOutbox, ContextView contextView) {
+        Sinks.EmitResult result;
+        // the sink takes one emitter at a time
+        synchronized (sends) {
+            result = sends.tryEmitNext(new Send(emailOutbox, contextView));
+        }
+        if (result.isFailure()) {
+            LOG.warn("email outbox send queue is full ({}), leave email to {} to the sweep", result, emailOutbox.getEmailTo());
+            deferredCounter.increment();
+        }
+    }
+
+    private Mono<Void> send(EmailOutbox emailOutbox) {
+        LOG.info("sending email to {}, subject: {}, body: {}", emailEp, emailOutbox.getSubject(), emailOutbox.getBody());
+
+        return downstreamWebClients.backgroundEmail().post().uri(emailEp)
+                .bodyValue(new Email(emailFrom, emailOutbox.getEmailTo(), emailOutbox.getSubject(), emailOutbox.getBody()))
+                .retrieve()
+                .bodyToMono(Map.class)
+                .doOnNext(map -> LOG.info("email response is: {}", map))
+                .then(emailOutboxRepository.deleteById(emailOutbox.getId()))
+                .doOnSuccess(unused -> sentCounter.increment())
+                .onErrorResume(throwable -> failed(emailOutbox, throwable));
+    }
+
+    private Mono<Void> failed(EmailOutbox emailOutbox, Throwable throwable) {
+        LOG.error("email failed: {}", throwable.getMessage());
+
+        int attempts = emailOutbox.getAttempts() + 1;
+        emailOutbox.setAttempts(attempts);
+        emailOutbox.setLastError(throwable.getMessage());
+        emailOutbox.setNewRecord(false);
+
+        if (attempts >= maxAttempts) {
+            LOG.error("email to {} failed {} times, moving it to dead letter", emailOutbox.getEmailTo(), attempts);
+            emailOutbox.setStatus(EmailOutbox.DEAD);
+            deadCounter.increment();
+        }
+        else {
+            emailOutbox.setNextAttemptAt(now().plus(backoff.multipliedBy(1L << Math.min(attempts - 1, 10))));
+            retryCounter.increment();
+        }
+        return emailOutboxRepository.save(emailOutbox).then();
+    }
+
+    private LocalDateTime now() {
+        return ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+    }
+}
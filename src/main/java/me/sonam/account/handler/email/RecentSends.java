@@ -0,0 +1,89 @@
+package me.sonam.account.handler.email;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import me.sonam.account.repo.entity.PasswordSecret;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * In-memory index of the secrets emailed in the last cooldown window, by authenticationId.  When the same
+ * kind of email is asked for again while its secret is still valid the caller either answers without sending
+ * anything (ABSORB, the default) or re-sends that secret without writing a new one (RESEND).  Any other change
+ * to a secret must {@link #forget(String)} it.  The index is local to the instance, a secret rotated by another
+ * instance is not seen here, so a caller re-sending a secret first checks it is still the stored one.
+ */
+@Component
+public class RecentSends {
+    private static final Logger LOG = LoggerFactory.getLogger(RecentSends.class);
+
+    public enum Mode {
+        OFF, RESEND, ABSORB
+    }
+
+    private record Sent(String kind, PasswordSecret passwordSecret) {
+    }
+
+    private final Mode mode;
+    private final Cache<String, Sent> sent;
+    private final MeterRegistry meterRegistry;
+
+    public RecentSends(MeterRegistry meterRegistry,
+                       @Value("${email-cooldown.mode:absorb}") String mode,
+                       @Value("${email-cooldown.window:5m}") Duration window,
+                       @Value("${email-cooldown.max-entries:100000}") long maxEntries) {
+        this.meterRegistry = meterRegistry;
+        this.mode = Mode.valueOf(mode.toUpperCase(Locale.ROOT));
+        this.sent = Caffeine.newBuilder().maximumSize(maxEntries).expireAfterWrite(window).build();
+        LOG.info("email cooldown mode: {}, window: {}", this.mode, window);
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * the secret of the same kind of email sent to this authenticationId within the window that is still
+     * valid at now, empty when the mode is OFF
+     */
+    public Optional<PasswordSecret> recent(String authenticationId, String kind, LocalDateTime now) {
+        if (mode == Mode.OFF) {
+            return Optional.empty();
+        }
+        Optional<PasswordSecret> recent = Optional.ofNullable(sent.getIfPresent(authenticationId))
+                .filter(entry -> entry.kind().equals(kind))
+                .map(Sent::passwordSecret)
+                .filter(passwordSecret -> passwordSecret.getExpireDate().isAfter(now));
+
+        recent.ifPresent(passwordSecret -> {
+            LOG.info("{} email was sent to authenticationId {} within the cooldown, {}", kind, authenticationId, mode);
+            meterRegistry.counter("account.email.cooldown", "kind", kind, "mode", mode.name().toLowerCase(Locale.ROOT)).increment();
+        });
+        return recent;
+    }
+
+    /**
+     * record the secret just emailed, it replaces whatever was sent before
+     */
+    public void remember(String kind, PasswordSecret passwordSecret) {
+        if (mode != Mode.OFF) {
+            sent.put(passwordSecret.getAuthenticationId(), new Sent(kind, passwordSecret));
+        }
+    }
+
+    /**
+     * call this whenever the secret of the authenticationId is consumed, deleted or replaced outside
+     * of {@link #remember(String, PasswordSecret)}
+     */
+    public void forget(String authenticationId) {
+        sent.invalidate(authenticationId);
+    }
+}
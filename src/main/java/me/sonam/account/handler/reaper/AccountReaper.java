@@ -0,0 +1,228 @@
+package me.sonam.account.handler.reaper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import me.sonam.account.config.DownstreamWebClients;
+import me.sonam.account.repo.AccountCache;
+import me.sonam.account.repo.AccountRepository;
+import me.sonam.account.repo.Dialect;
+import me.sonam.account.repo.DownstreamCompensationRepository;
+import me.sonam.account.repo.entity.DownstreamCompensation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Periodically purges accounts that were never activated and password secrets that expired, the same
+ * rows DELETE /accounts/email/{email} removes one at a time.  A inactive account is abandoned once its
+ * secret has been expired for the grace period, it is deleted with its secret and then deleted from
+ * user-rest-service and authentication-rest-service.  A downstream delete that fails is recorded as a
+ * DownstreamCompensation.  Rows are deleted in chunks with a pause between chunks and a limit on the
+ * chunks per run so a backlog is worked off without loading the database.  On PostgreSQL a run holds a
+ * session advisory lock so only one instance reaps at a time.
+ */
+@Component
+public class AccountReaper {
+    private static final Logger LOG = LoggerFactory.getLogger(AccountReaper.class);
+
+    @Value("${reaper.enabled:true}")
+    private boolean enabled;
+
+    @Value("${reaper.interval:10m}")
+    private Duration interval;
+
+    @Value("${reaper.grace:1d}")
+    private Duration grace;
+
+    @Value("${reaper.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${reaper.chunk-delay:1s}")
+    private Duration chunkDelay;
+
+    @Value("${reaper.max-chunks:20}")
+    private int maxChunks;
+
+    @Value("${reaper.downstream-concurrency:4}")
+    private int downstreamConcurrency;
+
+    @Value("${reaper.lock-key:7310001}")
+    private long lockKey;
+
+    @Value("${user-rest-service.root}${user-rest-service.delete}")
+    private String deleteUser;
+
+    @Value("${authentication-rest-service.root}${authentication-rest-service.delete}")
+    private String deleteAuthentication;
+
+    private final AccountRepository accountRepository;
+    private final AccountCache accountCache;
+    private final DownstreamCompensationRepository downstreamCompensationRepository;
+    private final DownstreamWebClients downstreamWebClients;
+    private final ConnectionFactory connectionFactory;
+    private final MeterRegistry meterRegistry;
+    private final Counter accountsDeleted;
+    private final Counter secretsDeleted;
+    private final AtomicLong lastRun = new AtomicLong();
+    private Disposable schedule;
+
+    public AccountReaper(AccountRepository accountRepository, AccountCache accountCache,
+                         DownstreamCompensationRepository downstreamCompensationRepository,
+                         DownstreamWebClients downstreamWebClients, ConnectionFactory connectionFactory,
+                         MeterRegistry meterRegistry) {
+        this.accountRepository = accountRepository;
+        this.accountCache = accountCache;
+        this.downstreamCompensationRepository = downstreamCompensationRepository;
+        this.downstreamWebClients = downstreamWebClients;
+        this.connectionFactory = connectionFactory;
+        this.meterRegistry = meterRegistry;
+        this.accountsDeleted = meterRegistry.counter("account.reaper.deleted", "type", "account");
+        this.secretsDeleted = meterRegistry.counter("account.reaper.deleted", "type", "password_secret");
+        Gauge.builder("account.reaper.last.run", lastRun, AtomicLong::get)
+                .description("epoch second the last reaper run finished")
+                .register(meterRegistry);
+    }
+
+    public record ReapResult(long accounts, long passwordSecrets) {
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            LOG.info("account reaper is disabled");
+            return;
+        }
+        LOG.info("start account reaper every {}, grace: {}, chunkSize: {}, chunkDelay: {}, maxChunks: {}",
+                interval, grace, chunkSize, chunkDelay, maxChunks);
+        schedule = Flux.interval(interval, interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> reap().onErrorResume(throwable -> {
+                    LOG.error("account reaper run failed", throwable);
+                    return Mono.empty();
+                }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (schedule != null) {
+            schedule.dispose();
+        }
+    }
+
+    /**
+     * run the reaper once, completes with nothing deleted when another instance holds the lock
+     */
+    public Mono<ReapResult> reap() {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+
+            return Mono.usingWhen(connectionFactory.create(),
+                            connection -> Mono.usingWhen(tryLock(connection),
+                                    locked -> locked ? reapChunks() : skipped(),
+                                    locked -> locked ? unlock(connection) : Mono.empty()),
+                            Connection::close)
+                    .doOnNext(result -> {
+                        LOG.info("account reaper deleted {} accounts and {} password secrets", result.accounts(), result.passwordSecrets());
+                        lastRun.set(ZonedDateTime.now(ZoneOffset.UTC).toEpochSecond());
+                        sample.stop(meterRegistry.timer("account.reaper.run", "result", "ok"));
+                    })
+                    .doOnError(throwable -> sample.stop(meterRegistry.timer("account.reaper.run", "result", "error")));
+        });
+    }
+
+    private Mono<ReapResult> reapChunks() {
+        final LocalDateTime expiredBefore = now().minus(grace);
+
+        return chunks(() -> reapAccountChunk(expiredBefore))
+                .flatMap(accounts -> chunks(() -> accountRepository.deleteExpiredSecrets(expiredBefore, chunkSize)
+                                .doOnNext(deleted -> secretsDeleted.increment(deleted)))
+                        .map(secrets -> new ReapResult(accounts, secrets)));
+    }
+
+    private Mono<ReapResult> skipped() {
+        LOG.info("another instance holds the account reaper lock, skip this run");
+        meterRegistry.counter("account.reaper.skipped").increment();
+        return Mono.just(new ReapResult(0, 0));
+    }
+
+    /**
+     * run chunk until it deletes less than a full chunk or maxChunks ran, pausing chunkDelay in between
+     */
+    private Mono<Long> chunks(Supplier<Mono<Long>> chunk) {
+        return Flux.range(0, maxChunks)
+                .concatMap(i -> i == 0 ? Mono.defer(chunk) : Mono.delay(chunkDelay).then(Mono.defer(chunk)))
+                .takeUntil(deleted -> deleted < chunkSize)
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> reapAccountChunk(LocalDateTime expiredBefore) {
+        return accountRepository.deleteAbandonedAccounts(expiredBefore, chunkSize)
+                .doOnNext(accountCache::invalidate)
+                .doOnNext(authenticationId -> accountsDeleted.increment())
+                .flatMap(this::deleteDownstream, downstreamConcurrency)
+                .count();
+    }
+
+    // the reaper runs without a request, the background clients send a client credentials token
+    private Mono<String> deleteDownstream(String authenticationId) {
+        return Mono.when(
+                        deleteDownstream(downstreamWebClients.backgroundUser(), DownstreamWebClients.USER_REST_SERVICE,
+                                deleteUser + authenticationId, authenticationId),
+                        deleteDownstream(downstreamWebClients.backgroundAuthentication(), DownstreamWebClients.AUTHENTICATION_REST_SERVICE,
+                                deleteAuthentication + authenticationId, authenticationId))
+                .thenReturn(authenticationId);
+    }
+
+    private Mono<Void> deleteDownstream(WebClient webClient, String service, String endpoint, String authenticationId) {
+        return webClient.delete().uri(endpoint).retrieve().bodyToMono(String.class)
+                .doOnSuccess(response -> meterRegistry.counter("account.reaper.downstream", "service", service, "result", "deleted").increment())
+                .then()
+                .onErrorResume(throwable -> {
+                    LOG.error("{} delete failed for authenticationId {}: {}", service, authenticationId, throwable.getMessage());
+                    meterRegistry.counter("account.reaper.downstream", "service", service, "result", "failed").increment();
+                    return downstreamCompensationRepository.save(new DownstreamCompensation(authenticationId, service, "delete",
+                            throwable.getMessage(), now())).then();
+                });
+    }
+
+    private Mono<Boolean> tryLock(Connection connection) {
+        if (!Dialect.isPostgres(connectionFactory)) {
+            return Mono.just(true);
+        }
+        return Mono.from(connection.createStatement("SELECT pg_try_advisory_lock($1) AS locked").bind(0, lockKey).execute())
+                .flatMap(result -> Mono.from(result.map((row, rowMetadata) -> row.get("locked", Boolean.class))));
+    }
+
+    private Mono<Void> unlock(Connection connection) {
+        if (!Dialect.isPostgres(connectionFactory)) {
+            return Mono.empty();
+        }
+        return Mono.from(connection.createStatement("SELECT pg_advisory_unlock($1) AS unlocked").bind(0, lockKey).execute())
+                .flatMap(result -> Mono.from(result.map((row, rowMetadata) -> row.get("unlocked", Boolean.class))))
+                .doOnNext(unlocked -> LOG.debug("account reaper lock released: {}", unlocked))
+                .then();
+    }
+
+    private static LocalDateTime now() {
+        return ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+    }
+}
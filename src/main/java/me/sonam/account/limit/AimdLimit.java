@@ -0,0 +1,72 @@
+package me.sonam.account.limit;
+
+import java.time.Duration;
+
+/**
+ * Additive increase, multiplicative decrease concurrency limit.  A request that finishes within the
+ * latency threshold while the limit is in use raises the limit by 1/limit, so by about one per round of
+ * requests.  A slower or failed request multiplies it by the backoff ratio, at most once per window of
+ * limit completions so one burst of slow requests backs off once instead of once per request.  The limit
+ * stays within min and max.
+ */
+class AimdLimit {
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+
+    private double limit;
+    private int inFlight;
+    private long completions;
+    private long nextBackoffAt;
+
+    AimdLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, Duration latencyThreshold) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * @return false when the limit is reached, otherwise the caller must {@link #release} once done
+     */
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    synchronized void release(long latencyNanos, boolean failed) {
+        completions++;
+
+        if (failed || latencyNanos > latencyThresholdNanos) {
+            if (completions >= nextBackoffAt) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                nextBackoffAt = completions + (long) Math.ceil(limit);
+            }
+        }
+        // only grow while the limit is used, an idle group should not build up a limit it never tested
+        else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        inFlight--;
+    }
+
+    /**
+     * @return share of the limit in use
+     */
+    synchronized double utilization() {
+        return inFlight / Math.floor(limit);
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,146 @@
+package me.sonam.account.limit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sheds load per route group instead of queueing it.  Each group has a {@link AimdLimit} on the requests
+ * it handles at once, a request over the limit is answered 503 with Retry-After.  Groups are added in
+ * priority order: while a group is above the shed-at share of its limit the groups added after it are
+ * shed too, so cheap reads keep their capacity when email sending routes are busy.  Requests of routes
+ * in no group are not limited.  Runs ahead of the security filters so a shed request costs nothing more.
+ * Exports account.concurrency.limit and account.concurrency.in-flight gauges and the
+ * account.concurrency.rejected counter tagged with the group.
+ */
+public class ConcurrencyLimitWebFilter implements WebFilter, Ordered {
+    private static final Logger LOG = LoggerFactory.getLogger(ConcurrencyLimitWebFilter.class);
+    private static final byte[] BODY = "{\"error\":\"too many requests in progress, retry later\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final Settings settings;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AimdLimit> groups = new LinkedHashMap<>();
+    private final List<Route> routes = new ArrayList<>();
+
+    private record Route(HttpMethod method, PathPattern pathPattern, String group) {
+    }
+
+    /**
+     * the limit settings every group starts with
+     */
+    public record Settings(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double shedAt, Duration retryAfter) {
+    }
+
+    public ConcurrencyLimitWebFilter(Settings settings, MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * add a group, after the groups it has priority over
+     * @param latencyThreshold a request slower than this lowers the group's limit
+     */
+    public ConcurrencyLimitWebFilter group(String group, Duration latencyThreshold) {
+        AimdLimit limit = new AimdLimit(settings.initialLimit(), settings.minLimit(), settings.maxLimit(),
+                settings.backoffRatio(), latencyThreshold);
+        groups.put(group, limit);
+
+        Gauge.builder("account.concurrency.limit", limit, AimdLimit::limit).tag("group", group).register(meterRegistry);
+        Gauge.builder("account.concurrency.in-flight", limit, AimdLimit::inFlight).tag("group", group).register(meterRegistry);
+        return this;
+    }
+
+    public ConcurrencyLimitWebFilter route(String group, HttpMethod method, String pathPattern) {
+        routes.add(new Route(method, PathPatternParser.defaultInstance.parse(pathPattern), group));
+        return this;
+    }
+
+    @Override
+    public int getOrder() {
+        // ahead of the security filter chain, which is at -100
+        return -200;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String group = group(exchange.getRequest().getMethod(), exchange.getRequest().getPath().pathWithinApplication());
+
+        if (group == null) {
+            return chain.filter(exchange);
+        }
+        AimdLimit limit = groups.get(group);
+
+        if (higherPriorityBusy(group)) {
+            return reject(exchange, group, "priority");
+        }
+        if (!limit.tryAcquire()) {
+            return reject(exchange, group, "limit");
+        }
+        final long start = System.nanoTime();
+
+        return chain.filter(exchange)
+                .doFinally(signalType -> {
+                    HttpStatusCode status = exchange.getResponse().getStatusCode();
+                    limit.release(System.nanoTime() - start, status != null && status.is5xxServerError());
+                });
+    }
+
+    private boolean higherPriorityBusy(String group) {
+        for (Map.Entry<String, AimdLimit> entry : groups.entrySet()) {
+            if (entry.getKey().equals(group)) {
+                return false;
+            }
+            if (entry.getValue().utilization() >= settings.shedAt()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the group of the first route matching the method and path, null when no route matches
+     */
+    public String group(HttpMethod method, PathContainer path) {
+        for (Route route : routes) {
+            if (route.method().equals(method) && route.pathPattern().matches(path)) {
+                return route.group();
+            }
+        }
+        return null;
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, String group, String reason) {
+        LOG.debug("shed {} request {} {}, reason: {}", group, exchange.getRequest().getMethod(), exchange.getRequest().getPath(), reason);
+        meterRegistry.counter("account.concurrency.rejected", "group", group, "reason", reason).increment();
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, settings.retryAfter().toSeconds())));
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        DataBuffer body = response.bufferFactory().wrap(BODY);
+        return response.writeWith(Mono.just(body));
+    }
+}
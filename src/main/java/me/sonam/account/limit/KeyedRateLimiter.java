@@ -0,0 +1,82 @@
+package me.sonam.account.limit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limits a route per email or authenticationId with a {@link TokenBucket} for each key, so one
+ * address cannot be used to rotate secrets and send email over and over.  A request over the limit is
+ * answered 429 with Retry-After before the handler runs.  The buckets are kept in a bounded Caffeine
+ * cache and dropped once they would be full again.  A route is configured with
+ * {@code email-rate-limit.routes.<route>.capacity} and {@code .refill-every}, falling back to
+ * {@code email-rate-limit.capacity} and {@code email-rate-limit.refill-every}.  Rejections are counted
+ * as account.rate-limit.rejected tagged with the route.
+ */
+@Component
+public class KeyedRateLimiter {
+    private static final Logger LOG = LoggerFactory.getLogger(KeyedRateLimiter.class);
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${email-rate-limit.max-keys:100000}")
+    private long maxKeys;
+
+    public KeyedRateLimiter(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * limit the route per value of the path variable
+     */
+    public HandlerFilterFunction<ServerResponse, ServerResponse> perKey(String route, String pathVariable) {
+        final long capacity = property(route, "capacity", Long.class, 3L);
+        final Duration refillEvery = property(route, "refill-every", Duration.class, Duration.ofMinutes(1));
+        LOG.info("rate limit {} per {} to {} requests, one more every {}", route, pathVariable, capacity, refillEvery);
+
+        final Cache<String, TokenBucket> buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(refillEvery.multipliedBy(capacity))
+                .build();
+
+        return (request, next) -> {
+            String key = URLDecoder.decode(request.pathVariable(pathVariable), StandardCharsets.UTF_8).toLowerCase(Locale.ROOT);
+            long waitNanos = buckets.get(key, k -> new TokenBucket(capacity, refillEvery.toNanos())).tryTake();
+
+            if (waitNanos == 0) {
+                return next.handle(request);
+            }
+            LOG.info("rate limited {} for {}", route, key);
+            meterRegistry.counter("account.rate-limit.rejected", "route", route).increment();
+
+            return ServerResponse.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(Map.of("error", "too many requests for this " + pathVariable + ", retry later"));
+        };
+    }
+
+    private <T> T property(String route, String name, Class<T> type, T defaultValue) {
+        return environment.getProperty("email-rate-limit.routes." + route + "." + name, type,
+                environment.getProperty("email-rate-limit." + name, type, defaultValue));
+    }
+}
@@ -0,0 +1,43 @@
+package me.sonam.account.limit;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Token bucket updated with compare and set instead of a lock.  It holds up to capacity tokens, gains
+ * one every refillNanos and each permitted request takes one.
+ */
+class TokenBucket {
+    private record State(long tokens, long refilledAt) {
+    }
+
+    private final long capacity;
+    private final long refillNanos;
+    private final AtomicReference<State> state;
+
+    TokenBucket(long capacity, long refillNanos) {
+        this.capacity = capacity;
+        this.refillNanos = refillNanos;
+        this.state = new AtomicReference<>(new State(capacity, System.nanoTime()));
+    }
+
+    /**
+     * @return 0 when a token was taken, otherwise the nanos until the next token
+     */
+    long tryTake() {
+        while (true) {
+            long now = System.nanoTime();
+            State current = state.get();
+            long refills = (now - current.refilledAt()) / refillNanos;
+            long tokens = Math.min(capacity, current.tokens() + refills);
+            // keep the part of a refill period already waited unless the bucket is full
+            long refilledAt = tokens == capacity ? now : current.refilledAt() + refills * refillNanos;
+
+            if (tokens == 0) {
+                return refilledAt + refillNanos - now;
+            }
+            if (state.compareAndSet(current, new State(tokens - 1, refilledAt))) {
+                return 0;
+            }
+        }
+    }
+}
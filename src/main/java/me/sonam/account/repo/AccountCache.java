@@ -0,0 +1,209 @@
+package me.sonam.account.repo;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import me.sonam.account.repo.entity.Account;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Read-through cache of Account rows in front of {@link AccountRepository}.
+ * Accounts are stored once by authenticationId; email and userId are kept as
+ * secondary indexes that point to the authenticationId.  A secondary entry is
+ * only a hit when the primary entry still exists and still carries that key,
+ * so invalidating the authenticationId is enough to drop every way of reaching a row.
+ * Only active rows are cached, a missing or inactive account always goes to the database
+ * so a activation is seen right away.  A row loaded while its authenticationId was
+ * invalidated is not cached, the load may have read it before the change.  Invalidation
+ * is local to the instance, other instances see a change once their entry expires.
+ */
+@Component
+public class AccountCache {
+    private static final Logger LOG = LoggerFactory.getLogger(AccountCache.class);
+    private static final int GENERATIONS = 1024;
+
+    private final AccountRepository accountRepository;
+    private final Cache<String, Account> byAuthenticationId;
+    private final Cache<String, String> authenticationIdByEmail;
+    private final Cache<UUID, String> authenticationIdByUserId;
+
+    // bumped by invalidate, per stripe of authenticationIds for loads by authenticationId and
+    // overall for loads by email or userId that don't know the authenticationId up front
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATIONS);
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public AccountCache(AccountRepository accountRepository, MeterRegistry meterRegistry,
+                        @Value("${account-cache.maximumSize:10000}") long maximumSize,
+                        @Value("${account-cache.expireAfterWrite:5m}") Duration expireAfterWrite) {
+        this.accountRepository = accountRepository;
+        LOG.info("account cache maximumSize: {}, expireAfterWrite: {}", maximumSize, expireAfterWrite);
+
+        this.byAuthenticationId = Caffeine.newBuilder().maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite).recordStats().build();
+        this.authenticationIdByEmail = Caffeine.newBuilder().maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite).build();
+        this.authenticationIdByUserId = Caffeine.newBuilder().maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite).build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, byAuthenticationId, "account");
+    }
+
+    public Mono<Account> findByAuthenticationId(String authenticationId) {
+        return Mono.justOrEmpty(byAuthenticationId.getIfPresent(authenticationId))
+                .switchIfEmpty(Mono.defer(() -> {
+                    long generation = generations.get(stripe(authenticationId));
+                    return accountRepository.findByAuthenticationId(authenticationId)
+                            .doOnNext(account -> put(account, () -> generations.get(stripe(authenticationId)) == generation));
+                }));
+    }
+
+    /**
+     * cached rows are emitted first, the rest are loaded with one query and cached.
+     * Authentication ids without an account are not emitted.
+     */
+    public Flux<Account> findByAuthenticationIds(Collection<String> authenticationIds) {
+        List<Account> cached = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+
+        for (String authenticationId : authenticationIds) {
+            Account account = byAuthenticationId.getIfPresent(authenticationId);
+            if (account != null) {
+                cached.add(account);
+            }
+            else {
+                missing.add(authenticationId);
+            }
+        }
+        LOG.debug("{} accounts cached, {} to load", cached.size(), missing.size());
+
+        if (missing.isEmpty()) {
+            return Flux.fromIterable(cached);
+        }
+        return Flux.fromIterable(cached)
+                .concatWith(Flux.defer(() -> {
+                    long invalidated = invalidations.get();
+                    return accountRepository.findByAuthenticationIdIn(missing)
+                            .doOnNext(account -> put(account, () -> invalidations.get() == invalidated));
+                }));
+    }
+
+    public Mono<Account> findByEmail(String email) {
+        return Mono.justOrEmpty(lookup(authenticationIdByEmail.getIfPresent(email)))
+                .filter(account -> email.equals(account.getEmail()))
+                .switchIfEmpty(Mono.defer(() -> {
+                    long invalidated = invalidations.get();
+                    return accountRepository.findByEmail(email)
+                            .doOnNext(account -> put(account, () -> invalidations.get() == invalidated));
+                }));
+    }
+
+    public Mono<Account> findByUserId(UUID userId) {
+        return Mono.justOrEmpty(lookup(authenticationIdByUserId.getIfPresent(userId)))
+                .filter(account -> userId.equals(account.getUserId()))
+                .switchIfEmpty(Mono.defer(() -> {
+                    long invalidated = invalidations.get();
+                    return accountRepository.findByUserId(userId)
+                            .doOnNext(account -> put(account, () -> invalidations.get() == invalidated));
+                }));
+    }
+
+    /**
+     * same semantics as {@link AccountRepository#existsByAuthenticationIdAndActiveTrue(String)}
+     */
+    public Mono<Boolean> isActive(String authenticationId) {
+        return findByAuthenticationId(authenticationId)
+                .map(account -> Boolean.TRUE.equals(account.getActive()))
+                .defaultIfEmpty(false);
+    }
+
+    /**
+     * drop the row for this authenticationId, call this whenever a row is
+     * created, updated or deleted
+     */
+    public void invalidate(String authenticationId) {
+        LOG.debug("invalidate account cache for authenticationId: {}", authenticationId);
+        generations.incrementAndGet(stripe(authenticationId));
+        invalidations.incrementAndGet();
+        drop(authenticationId);
+    }
+
+    public void invalidate(Account account) {
+        invalidate(account.getAuthenticationId());
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < GENERATIONS; i++) {
+            generations.incrementAndGet(i);
+        }
+        invalidations.incrementAndGet();
+        byAuthenticationId.invalidateAll();
+        authenticationIdByEmail.invalidateAll();
+        authenticationIdByUserId.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return byAuthenticationId.stats();
+    }
+
+    private void drop(String authenticationId) {
+        Account account = byAuthenticationId.getIfPresent(authenticationId);
+        byAuthenticationId.invalidate(authenticationId);
+
+        if (account != null) {
+            if (account.getEmail() != null) {
+                authenticationIdByEmail.invalidate(account.getEmail());
+            }
+            if (account.getUserId() != null) {
+                authenticationIdByUserId.invalidate(account.getUserId());
+            }
+        }
+    }
+
+    private Account lookup(String authenticationId) {
+        if (authenticationId == null) {
+            return null;
+        }
+        return byAuthenticationId.getIfPresent(authenticationId);
+    }
+
+    private static int stripe(String authenticationId) {
+        return Math.floorMod(authenticationId.hashCode(), GENERATIONS);
+    }
+
+    /**
+     * cache a active row unless it was invalidated since the load started.  The check runs again
+     * after the put so a invalidate racing with it can't leave the row behind.
+     */
+    private void put(Account account, BooleanSupplier current) {
+        if (account.getAuthenticationId() == null || !Boolean.TRUE.equals(account.getActive()) || !current.getAsBoolean()) {
+            return;
+        }
+        byAuthenticationId.put(account.getAuthenticationId(), account);
+
+        if (account.getEmail() != null) {
+            authenticationIdByEmail.put(account.getEmail(), account.getAuthenticationId());
+        }
+        if (account.getUserId() != null) {
+            authenticationIdByUserId.put(account.getUserId(), account.getAuthenticationId());
+        }
+        if (!current.getAsBoolean()) {
+            drop(account.getAuthenticationId());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package me.sonam.account.repo;
+
+import java.time.LocalDateTime;
+
+/**
+ * filters and order of a account export, null filters are not applied
+ * @param active only accounts with this active status
+ * @param accessedFrom only accounts accessed at or after this time
+ * @param accessedTo only accounts accessed before this time
+ * @param byAccessDateTime order by access date time and id instead of id, accounts without a access
+ *                         date time are left out
+ */
+public record AccountExportQuery(Boolean active, LocalDateTime accessedFrom, LocalDateTime accessedTo, boolean byAccessDateTime) {
+}
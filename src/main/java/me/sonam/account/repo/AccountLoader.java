@@ -0,0 +1,61 @@
+package me.sonam.account.repo;
+
+import me.sonam.account.repo.entity.Account;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Per-request memo of Account reads kept in the Reactor {@link Context}, so the steps of a request
+ * share one read of a row instead of each looking it up again.  A row loaded by email is also
+ * remembered by its authenticationId and the other way round.  Reads go through {@link AccountCache}.
+ * Only use it in flows that do not change the account, a loader does not see writes made after a read.
+ */
+public class AccountLoader {
+    private static final Class<AccountLoader> KEY = AccountLoader.class;
+
+    private final AccountCache accountCache;
+    private final Map<String, Mono<Account>> byAuthenticationId = new ConcurrentHashMap<>();
+    private final Map<String, Mono<Account>> byEmail = new ConcurrentHashMap<>();
+
+    public AccountLoader(AccountCache accountCache) {
+        this.accountCache = accountCache;
+    }
+
+    /**
+     * put a new loader in the context unless it has one already, use with {@code contextWrite}
+     */
+    public static Function<Context, Context> inContext(AccountCache accountCache) {
+        return context -> context.hasKey(KEY) ? context : context.put(KEY, new AccountLoader(accountCache));
+    }
+
+    /**
+     * the loader of the current request, or a new one when there is none in the context
+     */
+    public static Mono<AccountLoader> current(AccountCache accountCache) {
+        return Mono.deferContextual(context -> Mono.just(context.hasKey(KEY)
+                ? context.get(KEY) : new AccountLoader(accountCache)));
+    }
+
+    public Mono<Account> findByAuthenticationId(String authenticationId) {
+        return byAuthenticationId.computeIfAbsent(authenticationId, key ->
+                accountCache.findByAuthenticationId(key).doOnNext(this::remember).cache());
+    }
+
+    public Mono<Account> findByEmail(String email) {
+        return byEmail.computeIfAbsent(email, key ->
+                accountCache.findByEmail(key).doOnNext(this::remember).cache());
+    }
+
+    private void remember(Account account) {
+        if (account.getAuthenticationId() != null) {
+            byAuthenticationId.putIfAbsent(account.getAuthenticationId(), Mono.just(account));
+        }
+        if (account.getEmail() != null) {
+            byEmail.putIfAbsent(account.getEmail(), Mono.just(account));
+        }
+    }
+}
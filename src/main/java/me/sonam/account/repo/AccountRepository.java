@@ -6,25 +6,33 @@ import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.UUID;
 
-public interface AccountRepository extends ReactiveCrudRepository<Account, UUID> {
+public interface AccountRepository extends ReactiveCrudRepository<Account, UUID>, AccountRepositoryCustom {
     //@Query("delete from Account where authentiation_id= :authentication_Id and active=true")
     Mono<Account> findByUserId(UUID userId);
     Mono<Integer> deleteByUserId(UUID userId);
     Mono<Integer> deleteByAuthenticationIdAndActiveFalse(String authenticationId);
+    Mono<Integer> deleteByAuthenticationIdInAndActiveFalse(Collection<String> authenticationIds);
     Mono<Boolean> existsByAuthenticationId(String var1);
     Mono<Boolean> existsByEmail(String email);
+    @SingleFlight
     Mono<Boolean> existsByAuthenticationIdAndActiveTrue(String var1);
     Mono<Boolean> existsByEmailAndActiveTrue(String emailAddress);
 
     Mono<Account> findByEmailAndActiveTrue(String email);
+    @SingleFlight
     Mono<Account> findByAuthenticationId(String authenticationId);
+    Flux<Account> findByAuthenticationIdIn(Collection<String> authenticationIds);
     Mono<Integer> countByAuthenticationId(String authenticationId);
+    @SingleFlight
     Mono<Account> findByEmail(String email);
+    Flux<Account> findByEmailIn(Collection<String> emails);
     Mono<Boolean> existsByAuthenticationIdOrEmail(String authenticationId, String email);
     @Modifying
     @Query("Update Account a set a.active=true and a.access_date_time= :localDateTime where a.user_id= :userId")
@@ -0,0 +1,58 @@
+package me.sonam.account.repo;
+
+import me.sonam.account.repo.entity.Account;
+import me.sonam.account.repo.entity.PasswordSecret;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Account repository operations that are written by hand instead of derived from the method name.
+ */
+public interface AccountRepositoryCustom {
+    /**
+     * In one transaction delete the Password_Secret row when the secret matches and has not expired,
+     * then set the Account with the same authenticationId to active.
+     * @return true when the secret was consumed and the account activated, false when no matching
+     * unexpired secret was found.  Errors with EmptyResultDataAccessException, rolling back the
+     * secret deletion, when there is no account for the authenticationId.
+     */
+    Mono<Boolean> consumeSecretAndActivate(String authenticationId, String secret, LocalDateTime now);
+
+    /**
+     * Insert new accounts and their password secrets with multi-row inserts, run it inside the caller's
+     * transaction.  The rows must not exist yet, a duplicate authenticationId or email fails the insert.
+     * @return number of Account rows inserted
+     */
+    Mono<Long> insertAccountsWithSecrets(List<Account> accounts, List<PasswordSecret> passwordSecrets);
+
+    /**
+     * Read a page of accounts for the export by keyset: the page starts right after the last account of the
+     * previous page, so every page is a short indexed query no matter how far the export has got.  Pages by
+     * access time use the (access_date_time, id) index of schema version 3.
+     * @param after last account of the previous page, null for the first page
+     */
+    Flux<Account> findExportPage(AccountExportQuery query, Account after, int limit);
+
+    /**
+     * read the account with the email and its password secret with one query
+     * @return empty when there is no account with the email
+     */
+    Mono<AccountSecret> findAccountSecretByEmail(String email);
+
+    /**
+     * Delete up to limit inactive accounts whose password secret expired before expiredBefore, together with
+     * those secrets, in one transaction.
+     * @return authenticationIds of the deleted accounts
+     */
+    Flux<String> deleteAbandonedAccounts(LocalDateTime expiredBefore, int limit);
+
+    /**
+     * delete up to limit password secrets that expired before expiredBefore and do not belong to a inactive
+     * account, those are removed with their account by {@link #deleteAbandonedAccounts}
+     * @return number of secrets deleted
+     */
+    Mono<Long> deleteExpiredSecrets(LocalDateTime expiredBefore, int limit);
+}
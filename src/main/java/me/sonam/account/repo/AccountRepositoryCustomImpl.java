@@ -0,0 +1,165 @@
+package me.sonam.account.repo;
+
+import me.sonam.account.repo.entity.Account;
+import me.sonam.account.repo.entity.PasswordSecret;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityOperations;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class AccountRepositoryCustomImpl implements AccountRepositoryCustom {
+    private static final Logger LOG = LoggerFactory.getLogger(AccountRepositoryCustomImpl.class);
+
+    private static final MultiRowInsert<Account> ACCOUNT_INSERT = new MultiRowInsert<>("Account",
+            List.of("id", "user_id", "authentication_id", "email", "active", "access_date_time"),
+            account -> List.of(account.getId(), account.getUserId(), account.getAuthenticationId(), account.getEmail(),
+                    account.getActive(), account.getAccessDateTime()));
+
+    private static final MultiRowInsert<PasswordSecret> PASSWORD_SECRET_INSERT = new MultiRowInsert<>("Password_Secret",
+            List.of("authentication_id", "secret", "expire_date"),
+            passwordSecret -> List.of(passwordSecret.getAuthenticationId(), passwordSecret.getSecret(), passwordSecret.getExpireDate()));
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final R2dbcEntityOperations r2dbcEntityOperations;
+
+    public AccountRepositoryCustomImpl(DatabaseClient databaseClient, TransactionalOperator transactionalOperator,
+                                       R2dbcEntityOperations r2dbcEntityOperations) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.r2dbcEntityOperations = r2dbcEntityOperations;
+    }
+
+    @Override
+    public Mono<Boolean> consumeSecretAndActivate(String authenticationId, String secret, LocalDateTime now) {
+        // deleting first takes the row lock on the secret so a second concurrent activation
+        // waits for this one and then finds nothing to delete
+        return databaseClient.sql("DELETE FROM Password_Secret WHERE authentication_id = :authenticationId" +
+                        " AND secret = :secret AND expire_date > :now")
+                .bind("authenticationId", authenticationId)
+                .bind("secret", secret)
+                .bind("now", now)
+                .fetch().rowsUpdated()
+                .flatMap(deleted -> {
+                    if (deleted == 0) {
+                        LOG.info("no unexpired matching secret for authenticationId: {}", authenticationId);
+                        return Mono.just(false);
+                    }
+                    return databaseClient.sql("UPDATE Account SET active = true, access_date_time = :now" +
+                                    " WHERE authentication_id = :authenticationId")
+                            .bind("now", now)
+                            .bind("authenticationId", authenticationId)
+                            .fetch().rowsUpdated()
+                            .flatMap(updated -> {
+                                if (updated == 0) {
+                                    return Mono.error(new EmptyResultDataAccessException("no account with authenticationId", 1));
+                                }
+                                LOG.info("secret consumed and account activated for authenticationId: {}", authenticationId);
+                                return Mono.just(true);
+                            });
+                })
+                .as(transactionalOperator::transactional);
+    }
+
+    @Override
+    public Mono<Long> insertAccountsWithSecrets(List<Account> accounts, List<PasswordSecret> passwordSecrets) {
+        LOG.info("insert {} accounts and {} password secrets", accounts.size(), passwordSecrets.size());
+
+        return ACCOUNT_INSERT.insert(databaseClient, accounts)
+                .flatMap(inserted -> PASSWORD_SECRET_INSERT.insert(databaseClient, passwordSecrets).thenReturn(inserted));
+    }
+
+    @Override
+    public Flux<Account> findExportPage(AccountExportQuery query, Account after, int limit) {
+        Criteria criteria = Criteria.empty();
+
+        if (query.active() != null) {
+            criteria = criteria.and("active").is(query.active());
+        }
+        if (query.accessedFrom() != null) {
+            criteria = criteria.and("accessDateTime").greaterThanOrEquals(query.accessedFrom());
+        }
+        if (query.accessedTo() != null) {
+            criteria = criteria.and("accessDateTime").lessThan(query.accessedTo());
+        }
+
+        Sort sort;
+        if (query.byAccessDateTime()) {
+            criteria = criteria.and("accessDateTime").isNotNull();
+            if (after != null) {
+                criteria = criteria.and(Criteria.where("accessDateTime").greaterThan(after.getAccessDateTime())
+                        .or(Criteria.where("accessDateTime").is(after.getAccessDateTime()).and("id").greaterThan(after.getId())));
+            }
+            sort = Sort.by("accessDateTime", "id");
+        }
+        else {
+            if (after != null) {
+                criteria = criteria.and("id").greaterThan(after.getId());
+            }
+            sort = Sort.by("id");
+        }
+        return r2dbcEntityOperations.select(Query.query(criteria).sort(sort).limit(limit), Account.class);
+    }
+
+    @Override
+    public Mono<AccountSecret> findAccountSecretByEmail(String email) {
+        return databaseClient.sql("SELECT a.authentication_id, a.email, a.active, p.secret, p.expire_date FROM Account a" +
+                        " LEFT JOIN Password_Secret p ON p.authentication_id = a.authentication_id WHERE a.email = :email")
+                .bind("email", email)
+                .map((row, rowMetadata) -> new AccountSecret(row.get("authentication_id", String.class),
+                        row.get("email", String.class), Boolean.TRUE.equals(row.get("active", Boolean.class)),
+                        row.get("secret", String.class), row.get("expire_date", LocalDateTime.class)))
+                .one();
+    }
+
+    @Override
+    public Flux<String> deleteAbandonedAccounts(LocalDateTime expiredBefore, int limit) {
+        final String abandoned = "SELECT a.id FROM Account a JOIN Password_Secret p ON p.authentication_id = a.authentication_id" +
+                " WHERE a.active = false AND p.expire_date < :expiredBefore LIMIT :limit";
+
+        // PostgreSQL returns the deleted rows with RETURNING, H2 reads them from the OLD TABLE of the delete
+        final String sql = Dialect.isPostgres(databaseClient.getConnectionFactory())
+                ? "DELETE FROM Account WHERE id IN (" + abandoned + ") RETURNING authentication_id"
+                : "SELECT authentication_id FROM OLD TABLE (DELETE FROM Account WHERE id IN (" + abandoned + "))";
+
+        return databaseClient.sql(sql)
+                .bind("expiredBefore", expiredBefore)
+                .bind("limit", limit)
+                .map((row, rowMetadata) -> row.get("authentication_id", String.class))
+                .all()
+                .collectList()
+                .flatMap(authenticationIds -> {
+                    if (authenticationIds.isEmpty()) {
+                        return Mono.just(authenticationIds);
+                    }
+                    return databaseClient.sql("DELETE FROM Password_Secret WHERE authentication_id IN (:authenticationIds)")
+                            .bind("authenticationIds", authenticationIds)
+                            .fetch().rowsUpdated()
+                            .doOnNext(secrets -> LOG.info("deleted {} abandoned accounts and {} of their secrets", authenticationIds.size(), secrets))
+                            .thenReturn(authenticationIds);
+                })
+                .as(transactionalOperator::transactional)
+                .flatMapIterable(authenticationIds -> authenticationIds);
+    }
+
+    @Override
+    public Mono<Long> deleteExpiredSecrets(LocalDateTime expiredBefore, int limit) {
+        return databaseClient.sql("DELETE FROM Password_Secret WHERE authentication_id IN (" +
+                        "SELECT p.authentication_id FROM Password_Secret p WHERE p.expire_date < :expiredBefore" +
+                        " AND NOT EXISTS (SELECT 1 FROM Account a WHERE a.authentication_id = p.authentication_id AND a.active = false)" +
+                        " LIMIT :limit)")
+                .bind("expiredBefore", expiredBefore)
+                .bind("limit", limit)
+                .fetch().rowsUpdated();
+    }
+}
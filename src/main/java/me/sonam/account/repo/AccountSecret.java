@@ -0,0 +1,18 @@
+package me.sonam.account.repo;
+
+import java.time.LocalDateTime;
+
+/**
+ * read model of a account joined with its password secret, secret and expireDate are null when the
+ * account has no secret
+ */
+public record AccountSecret(String authenticationId, String email, boolean active, String secret, LocalDateTime expireDate) {
+
+    public boolean hasSecret() {
+        return secret != null;
+    }
+
+    public boolean isExpired(LocalDateTime now) {
+        return now.isAfter(expireDate);
+    }
+}
@@ -0,0 +1,27 @@
+package me.sonam.account.repo;
+
+import io.r2dbc.spi.ConnectionFactory;
+
+import java.util.Locale;
+
+/**
+ * The database behind a connection factory, for the few statements and migrations written per database.
+ */
+public final class Dialect {
+    public static final String POSTGRESQL = "postgresql";
+
+    private Dialect() {
+    }
+
+    /**
+     * postgresql for any postgres driver, otherwise the lower case driver name such as h2
+     */
+    public static String name(ConnectionFactory connectionFactory) {
+        String name = connectionFactory.getMetadata().getName().toLowerCase(Locale.ROOT);
+        return name.contains("postgres") ? POSTGRESQL : name;
+    }
+
+    public static boolean isPostgres(ConnectionFactory connectionFactory) {
+        return POSTGRESQL.equals(name(connectionFactory));
+    }
+}
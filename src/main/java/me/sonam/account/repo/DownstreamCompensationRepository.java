@@ -0,0 +1,11 @@
+package me.sonam.account.repo;
+
+import me.sonam.account.repo.entity.DownstreamCompensation;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+
+import java.util.UUID;
+
+public interface DownstreamCompensationRepository extends ReactiveCrudRepository<DownstreamCompensation, UUID> {
+    Flux<DownstreamCompensation> findByAuthenticationId(String authenticationId);
+}
@@ -0,0 +1,28 @@
+package me.sonam.account.repo;
+
+import me.sonam.account.repo.entity.EmailOutbox;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public interface EmailOutboxRepository extends ReactiveCrudRepository<EmailOutbox, UUID>, EmailOutboxRepositoryCustom {
+    @Query("SELECT * FROM Email_Outbox WHERE status = 'PENDING' AND next_attempt_at <= :now ORDER BY next_attempt_at LIMIT :limit")
+    Flux<EmailOutbox> findDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * claim a row for sending by moving its next attempt time forward, only one dispatcher
+     * sees the old next_attempt_at so only one of them gets a row count of 1
+     */
+    @Modifying
+    @Query("UPDATE Email_Outbox SET next_attempt_at = :leaseUntil WHERE id = :id AND status = 'PENDING' AND next_attempt_at = :nextAttemptAt")
+    Mono<Integer> claim(@Param("id") UUID id, @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                        @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    Mono<Long> countByStatus(String status);
+}
@@ -0,0 +1,17 @@
+package me.sonam.account.repo;
+
+import me.sonam.account.repo.entity.EmailOutbox;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Email outbox operations that are written by hand instead of derived from the method name.
+ */
+public interface EmailOutboxRepositoryCustom {
+    /**
+     * insert new outbox rows with multi-row inserts, run it inside the caller's transaction
+     * @return number of rows inserted
+     */
+    Mono<Long> insertAll(List<EmailOutbox> emailOutboxes);
+}
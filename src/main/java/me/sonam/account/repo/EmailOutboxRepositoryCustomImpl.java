@@ -0,0 +1,25 @@
+package me.sonam.account.repo;
+
+import me.sonam.account.repo.entity.EmailOutbox;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public class EmailOutboxRepositoryCustomImpl implements EmailOutboxRepositoryCustom {
+    private static final MultiRowInsert<EmailOutbox> EMAIL_OUTBOX_INSERT = new MultiRowInsert<>("Email_Outbox",
+            List.of("id", "email_to", "subject", "body", "status", "attempts", "next_attempt_at", "created"),
+            emailOutbox -> List.of(emailOutbox.getId(), emailOutbox.getEmailTo(), emailOutbox.getSubject(), emailOutbox.getBody(),
+                    emailOutbox.getStatus(), emailOutbox.getAttempts(), emailOutbox.getNextAttemptAt(), emailOutbox.getCreated()));
+
+    private final DatabaseClient databaseClient;
+
+    public EmailOutboxRepositoryCustomImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<Long> insertAll(List<EmailOutbox> emailOutboxes) {
+        return EMAIL_OUTBOX_INSERT.insert(databaseClient, emailOutboxes);
+    }
+}
@@ -0,0 +1,64 @@
+package me.sonam.account.repo;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Inserts rows with one {@code INSERT ... VALUES (...), (...)} statement per chunk instead of
+ * a statement per row.  The chunk size keeps the number of bind markers well under the 32767
+ * PostgreSQL allows in one statement.  Values must not be null, leave nullable columns out.
+ */
+final class MultiRowInsert<T> {
+    private static final int MAX_BIND_MARKERS = 30000;
+
+    private final String table;
+    private final List<String> columns;
+    private final Function<T, List<Object>> values;
+
+    MultiRowInsert(String table, List<String> columns, Function<T, List<Object>> values) {
+        this.table = table;
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * @return number of rows inserted
+     */
+    Mono<Long> insert(DatabaseClient databaseClient, List<T> rows) {
+        if (rows.isEmpty()) {
+            return Mono.just(0L);
+        }
+        final int rowsPerStatement = Math.max(1, MAX_BIND_MARKERS / columns.size());
+
+        return Flux.range(0, (rows.size() + rowsPerStatement - 1) / rowsPerStatement)
+                .concatMap(chunk -> insertChunk(databaseClient,
+                        rows.subList(chunk * rowsPerStatement, Math.min(rows.size(), (chunk + 1) * rowsPerStatement))))
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> insertChunk(DatabaseClient databaseClient, List<T> rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table)
+                .append(" (").append(String.join(", ", columns)).append(") VALUES ");
+
+        for (int row = 0; row < rows.size(); row++) {
+            sql.append(row == 0 ? "(" : ", (");
+            for (int column = 0; column < columns.size(); column++) {
+                sql.append(column == 0 ? "" : ", ").append(":p").append(row).append('_').append(column);
+            }
+            sql.append(')');
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        for (int row = 0; row < rows.size(); row++) {
+            List<Object> rowValues = values.apply(rows.get(row));
+            for (int column = 0; column < columns.size(); column++) {
+                spec = spec.bind("p" + row + "_" + column, rowValues.get(column));
+            }
+        }
+        return spec.fetch().rowsUpdated();
+    }
+}
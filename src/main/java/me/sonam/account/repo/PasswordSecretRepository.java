@@ -5,8 +5,10 @@ import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 
-public interface PasswordSecretRepository extends ReactiveCrudRepository<PasswordSecret, String> {
+public interface PasswordSecretRepository extends ReactiveCrudRepository<PasswordSecret, String>, PasswordSecretRepositoryCustom {
     Mono<Boolean> existsByAuthenticationIdAndSecretAndExpireDateAfter(String authenticationId, String secret, LocalDateTime localDateTime);
     Mono<Integer> deleteByAuthenticationId(String authenticationId);
+    Mono<Integer> deleteByAuthenticationIdIn(Collection<String> authenticationIds);
 }
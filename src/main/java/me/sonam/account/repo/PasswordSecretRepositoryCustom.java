@@ -0,0 +1,16 @@
+package me.sonam.account.repo;
+
+import me.sonam.account.repo.entity.PasswordSecret;
+import reactor.core.publisher.Mono;
+
+/**
+ * Password secret operations that are written by hand instead of derived from the method name.
+ */
+public interface PasswordSecretRepositoryCustom {
+    /**
+     * insert the secret or replace the one the authenticationId already has in a single statement,
+     * concurrent rotations for the same authenticationId leave exactly one secret, the last one written
+     * @return the secret that was written
+     */
+    Mono<PasswordSecret> rotate(PasswordSecret passwordSecret);
+}
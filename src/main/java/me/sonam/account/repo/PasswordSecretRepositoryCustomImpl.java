@@ -0,0 +1,30 @@
+package me.sonam.account.repo;
+
+import me.sonam.account.repo.entity.PasswordSecret;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+public class PasswordSecretRepositoryCustomImpl implements PasswordSecretRepositoryCustom {
+    // H2 has no ON CONFLICT ... DO UPDATE, its MERGE with a KEY column is the same upsert
+    private static final String POSTGRES_UPSERT = "INSERT INTO Password_Secret (authentication_id, secret, expire_date)" +
+            " VALUES (:authenticationId, :secret, :expireDate)" +
+            " ON CONFLICT (authentication_id) DO UPDATE SET secret = EXCLUDED.secret, expire_date = EXCLUDED.expire_date";
+    private static final String H2_UPSERT = "MERGE INTO Password_Secret (authentication_id, secret, expire_date)" +
+            " KEY (authentication_id) VALUES (:authenticationId, :secret, :expireDate)";
+
+    private final DatabaseClient databaseClient;
+
+    public PasswordSecretRepositoryCustomImpl(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<PasswordSecret> rotate(PasswordSecret passwordSecret) {
+        return databaseClient.sql(Dialect.isPostgres(databaseClient.getConnectionFactory()) ? POSTGRES_UPSERT : H2_UPSERT)
+                .bind("authenticationId", passwordSecret.getAuthenticationId())
+                .bind("secret", passwordSecret.getSecret())
+                .bind("expireDate", passwordSecret.getExpireDate())
+                .fetch().rowsUpdated()
+                .thenReturn(passwordSecret);
+    }
+}
@@ -0,0 +1,18 @@
+package me.sonam.account.repo;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a read-only repository method returning a Mono whose concurrent calls with the same arguments
+ * share one query, see {@link SingleFlightInterceptor}.  Callers get the same
+ * entity instance so they must not change it.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface SingleFlight {
+}
@@ -0,0 +1,73 @@
+package me.sonam.account.repo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.transaction.reactive.TransactionContext;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Concurrent calls of a {@link SingleFlight} repository method with the same arguments share one query.
+ * The first call of a key runs the query and the calls arriving before it completes subscribe to the
+ * same result, the key is dropped once the query completes so a later call queries again.  Calls inside
+ * a transaction always run their own query as it has to use the connection of the transaction.
+ * Counted as account.repository.single-flight with result leader for the calls that ran the query and
+ * shared for the ones that joined it.
+ */
+public class SingleFlightInterceptor implements MethodInterceptor {
+    public static final String SINGLE_FLIGHT = "account.repository.single-flight";
+
+    private final String repository;
+    private final Supplier<MeterRegistry> meterRegistry;
+    private final Map<List<Object>, Flight> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param meterRegistry looked up on each call, may supply null
+     */
+    public SingleFlightInterceptor(String repository, Supplier<MeterRegistry> meterRegistry) {
+        this.repository = repository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+
+        if (!(result instanceof Mono<?> query) || !invocation.getMethod().isAnnotationPresent(SingleFlight.class)) {
+            return result;
+        }
+        final String method = invocation.getMethod().getName();
+        final List<Object> key = List.of(method, Arrays.asList(invocation.getArguments()));
+
+        return Mono.deferContextual(context -> {
+            if (context.hasKey(TransactionContext.class)) {
+                return query;
+            }
+            boolean[] leader = new boolean[1];
+            Flight flight = inFlight.computeIfAbsent(key, k -> {
+                leader[0] = true;
+                return new Flight(k, query);
+            });
+            MeterRegistry registry = meterRegistry.get();
+            if (registry != null) {
+                registry.counter(SINGLE_FLIGHT, "repository", repository, "method", method,
+                        "result", leader[0] ? "leader" : "shared").increment();
+            }
+            return flight.mono;
+        });
+    }
+
+    private final class Flight {
+        private final Mono<?> mono;
+
+        Flight(List<Object> key, Mono<?> query) {
+            this.mono = query.doFinally(signal -> inFlight.remove(key, this)).cache();
+        }
+    }
+}
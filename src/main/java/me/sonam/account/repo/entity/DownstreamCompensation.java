@@ -0,0 +1,81 @@
+package me.sonam.account.repo.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * represents a call to user-rest-service or authentication-rest-service that failed
+ * after the account change was committed, kept so the services can be reconciled later.
+ * Nothing replays the rows, they are read and cleared by whoever reconciles them.
+ */
+public class DownstreamCompensation implements Persistable<UUID> {
+    @Id
+    private UUID id;
+    private String authenticationId;
+    private String service;             // downstream service that failed, eg user-rest-service
+    private String action;              // operation that failed on the service, eg activate
+    private String error;
+    private LocalDateTime created;
+
+    @Transient
+    private boolean newRecord;
+
+    public DownstreamCompensation() {
+    }
+
+    public DownstreamCompensation(String authenticationId, String service, String action, String error, LocalDateTime created) {
+        this.newRecord = true;
+        this.id = UUID.randomUUID();
+        this.authenticationId = authenticationId;
+        this.service = service;
+        this.action = action;
+        this.error = error;
+        this.created = created;
+    }
+
+    @Override
+    public UUID getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isNew() {
+        return this.newRecord;
+    }
+
+    public String getAuthenticationId() {
+        return authenticationId;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public LocalDateTime getCreated() {
+        return created;
+    }
+
+    @Override
+    public String toString() {
+        return "DownstreamCompensation{" +
+                "id=" + id +
+                ", authenticationId=" + authenticationId +
+                ", service=" + service +
+                ", action=" + action +
+                ", error=" + error +
+                ", created=" + created +
+                '}';
+    }
+}
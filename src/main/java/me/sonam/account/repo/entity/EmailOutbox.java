@@ -0,0 +1,122 @@
+package me.sonam.account.repo.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * represents a email waiting to be sent to email-rest-service.  The row is written in the same
+ * transaction as the PasswordSecret the email carries and deleted once email-rest-service accepts it.
+ */
+public class EmailOutbox implements Persistable<UUID> {
+    public static final String PENDING = "PENDING";
+    public static final String DEAD = "DEAD";
+
+    @Id
+    private UUID id;
+    private String emailTo;
+    private String subject;
+    private String body;
+    private String status;
+    private int attempts;
+    private LocalDateTime nextAttemptAt;    // the row is not picked up by the dispatcher before this time
+    private String lastError;
+    private LocalDateTime created;
+
+    @Transient
+    private boolean newRecord;
+
+    public EmailOutbox() {
+    }
+
+    public EmailOutbox(String emailTo, String subject, String body, LocalDateTime created, LocalDateTime nextAttemptAt) {
+        this.newRecord = true;
+        this.id = UUID.randomUUID();
+        this.emailTo = emailTo;
+        this.subject = subject;
+        this.body = body;
+        this.status = PENDING;
+        this.attempts = 0;
+        this.created = created;
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    @Override
+    public UUID getId() {
+        return id;
+    }
+
+    @Override
+    public boolean isNew() {
+        return this.newRecord;
+    }
+
+    public void setNewRecord(boolean newRecord) {
+        this.newRecord = newRecord;
+    }
+
+    public String getEmailTo() {
+        return emailTo;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getCreated() {
+        return created;
+    }
+
+    @Override
+    public String toString() {
+        return "EmailOutbox{" +
+                "id=" + id +
+                ", emailTo=" + emailTo +
+                ", subject=" + subject +
+                ", status=" + status +
+                ", attempts=" + attempts +
+                ", nextAttemptAt=" + nextAttemptAt +
+                ", lastError=" + lastError +
+                ", created=" + created +
+                '}';
+    }
+}
@@ -0,0 +1,7 @@
+-- h2 has neither concurrent nor partial indexes, the partial ones become plain indexes
+create unique index if not exists account_authentication_id_uidx on Account (authentication_id);
+create unique index if not exists account_email_uidx on Account (email);
+create index if not exists account_user_id_idx on Account (user_id);
+create index if not exists account_active_authentication_id_idx on Account (active, authentication_id);
+create index if not exists password_secret_expire_date_idx on Password_Secret (expire_date);
+create index if not exists email_outbox_due_idx on Email_Outbox (status, next_attempt_at);
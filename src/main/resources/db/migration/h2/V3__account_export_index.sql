@@ -0,0 +1,2 @@
+-- keyset pages of the export ordered by access time, h2 has no concurrent index build
+create index if not exists account_access_date_time_id_idx on Account (access_date_time, id);
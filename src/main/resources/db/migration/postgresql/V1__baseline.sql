@@ -0,0 +1,5 @@
+-- tables as created by the former schema.sql, existing databases already have them
+CREATE TABLE if not exists Account (id UUID PRIMARY KEY, user_id uuid, authentication_id varchar, email varchar, active boolean, access_date_time timestamp);
+create table if not exists Password_Secret(authentication_id varchar primary key, user_id uuid, secret varchar, expire_date timestamp);
+create table if not exists Downstream_Compensation(id UUID primary key, authentication_id varchar, service varchar, action varchar, error varchar, attempts integer, created timestamp);
+create table if not exists Email_Outbox(id UUID primary key, email_to varchar, subject varchar, body varchar, status varchar, attempts integer, next_attempt_at timestamp, last_error varchar, created timestamp);
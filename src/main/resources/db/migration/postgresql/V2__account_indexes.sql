@@ -0,0 +1,9 @@
+-- built concurrently so the tables stay writable, each statement runs outside a transaction.
+-- A concurrent build that fails leaves an INVALID index behind which "if not exists" would keep,
+-- drop it before restarting.  The unique indexes fail if duplicate authentication_id or email rows exist.
+create unique index concurrently if not exists account_authentication_id_uidx on Account (authentication_id);
+create unique index concurrently if not exists account_email_uidx on Account (email);
+create index concurrently if not exists account_user_id_idx on Account (user_id);
+create index concurrently if not exists account_inactive_authentication_id_idx on Account (authentication_id) where active = false;
+create index concurrently if not exists password_secret_expire_date_idx on Password_Secret (expire_date);
+create index concurrently if not exists email_outbox_due_idx on Email_Outbox (next_attempt_at) where status = 'PENDING';
@@ -0,0 +1,3 @@
+-- keyset pages of the export ordered by access time, built concurrently so the table stays writable.
+-- A failed concurrent build leaves an INVALID index behind, drop it before restarting.
+create index concurrently if not exists account_access_date_time_id_idx on Account (access_date_time, id);
@@ -1,2 +0,0 @@
-CREATE TABLE if not exists Account (id UUID PRIMARY KEY, user_id uuid, authentication_id varchar, email varchar, active boolean, access_date_time timestamp);
-create table if not exists Password_Secret(authentication_id varchar primary key, user_id uuid, secret varchar, expire_date timestamp);
\ No newline at end of file
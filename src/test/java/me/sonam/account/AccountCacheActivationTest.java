@@ -0,0 +1,69 @@
+package me.sonam.account;
+
+import me.sonam.account.repo.AccountCache;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the account cache with a real expiry through the routes: a account read while inactive
+ * and then activated is read as active right after the activation, and later reads are served
+ * from the cache.
+ */
+@TestPropertySource(properties = "account-cache.expireAfterWrite=10m")
+public class AccountCacheActivationTest extends MockDownstreamTest {
+    private static final Logger LOG = LoggerFactory.getLogger(AccountCacheActivationTest.class);
+
+    @Autowired
+    private AccountCache accountCache;
+
+    @BeforeAll
+    static void respond() {
+        respondWith(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(200).setBody("activated");
+            }
+        });
+    }
+
+    @AfterEach
+    public void invalidateCache() {
+        accountCache.invalidateAll();
+    }
+
+    @Test
+    public void activatedAccountIsReadActive() {
+        final String authenticationId = "cacheActivation";
+        saveInactiveAccount(authenticationId);
+
+        assertThat(activeStatus(authenticationId)).isEqualTo("Account active status is false");
+
+        client.get().uri("/accounts/" + authenticationId + "/active/mysecret")
+                .exchange().expectStatus().isOk();
+
+        assertThat(activeStatus(authenticationId)).isEqualTo("Account active status is true");
+
+        long hits = accountCache.stats().hitCount();
+        assertThat(activeStatus(authenticationId)).isEqualTo("Account active status is true");
+        LOG.info("cache stats: {}", accountCache.stats());
+        assertThat(accountCache.stats().hitCount()).isEqualTo(hits + 1);
+    }
+
+    private String activeStatus(String authenticationId) {
+        Map body = client.get().uri("/accounts/" + authenticationId + "/active")
+                .exchange().expectStatus().isOk().expectBody(Map.class).returnResult().getResponseBody();
+        return body.get("message").toString();
+    }
+}
@@ -0,0 +1,123 @@
+package me.sonam.account;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.sonam.account.repo.AccountCache;
+import me.sonam.account.repo.AccountRepository;
+import me.sonam.account.repo.entity.Account;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the read-through account cache lookups, invalidation and stats
+ */
+public class AccountCacheTest {
+    private static final Logger LOG = LoggerFactory.getLogger(AccountCacheTest.class);
+
+    private AccountRepository accountRepository;
+    private AccountCache accountCache;
+
+    @BeforeEach
+    public void setup() {
+        accountRepository = mock(AccountRepository.class);
+        accountCache = new AccountCache(accountRepository, new SimpleMeterRegistry(), 100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    public void cachedByAllKeys() {
+        UUID userId = UUID.randomUUID();
+        Account account = new Account("cachedByAllKeys", "cachedByAllKeys@sonam.email", true, LocalDateTime.now(), userId);
+        when(accountRepository.findByAuthenticationId(account.getAuthenticationId())).thenReturn(Mono.just(account));
+
+        StepVerifier.create(accountCache.isActive(account.getAuthenticationId())).expectNext(true).verifyComplete();
+
+        LOG.info("lookups by email and userId are served from the row loaded by authenticationId");
+        StepVerifier.create(accountCache.findByEmail(account.getEmail())).expectNext(account).verifyComplete();
+        StepVerifier.create(accountCache.findByUserId(userId)).expectNext(account).verifyComplete();
+        StepVerifier.create(accountCache.isActive(account.getAuthenticationId())).expectNext(true).verifyComplete();
+
+        verify(accountRepository, times(1)).findByAuthenticationId(account.getAuthenticationId());
+        assertThat(accountCache.stats().hitCount()).isEqualTo(3);
+        assertThat(accountCache.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidateDropsAllKeys() {
+        UUID userId = UUID.randomUUID();
+        Account account = new Account("invalidate", "invalidate@sonam.email", true, LocalDateTime.now(), userId);
+
+        when(accountRepository.findByEmail(account.getEmail())).thenReturn(Mono.just(account), Mono.empty());
+        when(accountRepository.findByAuthenticationId(account.getAuthenticationId())).thenReturn(Mono.empty());
+
+        StepVerifier.create(accountCache.findByEmail(account.getEmail())).expectNext(account).verifyComplete();
+        StepVerifier.create(accountCache.isActive(account.getAuthenticationId())).expectNext(true).verifyComplete();
+
+        LOG.info("the account is deleted");
+        accountCache.invalidate(account.getAuthenticationId());
+
+        StepVerifier.create(accountCache.isActive(account.getAuthenticationId())).expectNext(false).verifyComplete();
+        StepVerifier.create(accountCache.findByEmail(account.getEmail())).verifyComplete();
+        StepVerifier.create(accountCache.findByUserId(userId)).verifyComplete();
+    }
+
+    @Test
+    public void inactiveAccountIsNotCached() {
+        Account inactive = new Account("inactive", "inactive@sonam.email", false, LocalDateTime.now(), UUID.randomUUID());
+        Account active = new Account("inactive", "inactive@sonam.email", true, LocalDateTime.now(), inactive.getUserId());
+        when(accountRepository.findByAuthenticationId(inactive.getAuthenticationId())).thenReturn(Mono.just(inactive), Mono.just(active));
+
+        StepVerifier.create(accountCache.isActive(inactive.getAuthenticationId())).expectNext(false).verifyComplete();
+
+        LOG.info("activated without the cache being invalidated, as on another instance");
+        StepVerifier.create(accountCache.isActive(inactive.getAuthenticationId())).expectNext(true).verifyComplete();
+        StepVerifier.create(accountCache.isActive(inactive.getAuthenticationId())).expectNext(true).verifyComplete();
+
+        verify(accountRepository, times(2)).findByAuthenticationId(inactive.getAuthenticationId());
+    }
+
+    @Test
+    public void loadOverlappingInvalidateIsNotCached() {
+        Account before = new Account("overlap", "overlap@sonam.email", true, LocalDateTime.now(), UUID.randomUUID());
+        Account after = new Account("overlap", "changed@sonam.email", true, LocalDateTime.now(), before.getUserId());
+        Sinks.One<Account> slowLoad = Sinks.one();
+        when(accountRepository.findByAuthenticationId(before.getAuthenticationId())).thenReturn(slowLoad.asMono(), Mono.just(after));
+
+        StepVerifier.create(accountCache.findByAuthenticationId(before.getAuthenticationId()))
+                .then(() -> {
+                    LOG.info("the row changes while it is being loaded");
+                    accountCache.invalidate(before.getAuthenticationId());
+                    slowLoad.tryEmitValue(before);
+                })
+                .expectNext(before)
+                .verifyComplete();
+
+        StepVerifier.create(accountCache.findByAuthenticationId(before.getAuthenticationId())).expectNext(after).verifyComplete();
+        StepVerifier.create(accountCache.findByAuthenticationId(before.getAuthenticationId())).expectNext(after).verifyComplete();
+
+        verify(accountRepository, times(2)).findByAuthenticationId(before.getAuthenticationId());
+    }
+
+    @Test
+    public void missingAccountIsNotCached() {
+        when(accountRepository.findByAuthenticationId("missing")).thenReturn(Mono.empty());
+
+        StepVerifier.create(accountCache.isActive("missing")).expectNext(false).verifyComplete();
+        StepVerifier.create(accountCache.isActive("missing")).expectNext(false).verifyComplete();
+
+        verify(accountRepository, times(2)).findByAuthenticationId("missing");
+    }
+}
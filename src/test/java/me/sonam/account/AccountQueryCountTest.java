@@ -0,0 +1,110 @@
+package me.sonam.account;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import me.sonam.account.config.RepositoryObservationConfig;
+import me.sonam.account.handler.UserAccount;
+import me.sonam.account.repo.AccountRepository;
+import me.sonam.account.repo.entity.Account;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
+import reactor.test.StepVerifier;
+
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the email flows read the Account once per request, counting the AccountRepository calls
+ * from the account.repository observation timers.  The flows by authenticationId have no route
+ * so they are called on the service.
+ */
+public class AccountQueryCountTest extends MockDownstreamTest {
+    private static final Logger LOG = LoggerFactory.getLogger(AccountQueryCountTest.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserAccount userAccount;
+
+    @Test
+    public void emailActivationLinkUsingEmail() {
+        String email = save("queryCountInactive", false);
+
+        long reads = accountReads(() -> client.put().uri("/accounts/active/email/" + email + "/password-secret")
+                .exchange().expectStatus().isOk());
+
+        assertThat(reads).isEqualTo(1);
+    }
+
+    @Test
+    public void emailActivationLink() {
+        save("queryCountActivationLink", false);
+        MockServerRequest serverRequest = MockServerRequest.builder()
+                .pathVariable("authenticationId", "queryCountActivationLink").build();
+
+        long reads = accountReads(() -> StepVerifier.create(userAccount.emailActivationLink(serverRequest))
+                .expectNext("Email activation link has been sent").verifyComplete());
+
+        assertThat(reads).isEqualTo(1);
+    }
+
+    @Test
+    public void emailMySecret() {
+        save("queryCountMySecret", true);
+        MockServerRequest serverRequest = MockServerRequest.builder()
+                .pathVariable("authenticationId", "queryCountMySecret").build();
+
+        long reads = accountReads(() -> StepVerifier.create(userAccount.emailMySecret(serverRequest))
+                .expectNextCount(1).verifyComplete());
+
+        assertThat(reads).isEqualTo(1);
+    }
+
+    @Test
+    public void emailMySecretUsingEmail() {
+        String email = save("queryCountSecret", true);
+
+        long reads = accountReads(() -> client.put().uri("/accounts/email/" + email + "/password-secret")
+                .exchange().expectStatus().isOk());
+
+        assertThat(reads).isEqualTo(1);
+    }
+
+    @Test
+    public void sendLoginId() {
+        String email = save("queryCountLoginId", true);
+
+        long reads = accountReads(() -> client.put().uri("/accounts/email/" + email + "/authentication-id")
+                .exchange().expectStatus().isOk());
+
+        assertThat(reads).isEqualTo(1);
+    }
+
+    private String save(String authenticationId, boolean active) {
+        String email = authenticationId + "@sonam.co";
+        accountRepository.save(new Account(authenticationId, email, active, LocalDateTime.now(), UUID.randomUUID())).block();
+        return URLEncoder.encode(email, Charset.defaultCharset());
+    }
+
+    private long accountReads(Runnable request) {
+        long before = accountRepositoryCalls();
+        request.run();
+        long reads = accountRepositoryCalls() - before;
+        LOG.info("AccountRepository calls: {}", reads);
+        return reads;
+    }
+
+    private long accountRepositoryCalls() {
+        return meterRegistry.find(RepositoryObservationConfig.REPOSITORY_OBSERVATION)
+                .tag("repository", AccountRepository.class.getSimpleName())
+                .timers().stream().mapToLong(Timer::count).sum();
+    }
+}
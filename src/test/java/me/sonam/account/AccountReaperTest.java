@@ -0,0 +1,113 @@
+package me.sonam.account;
+
+import me.sonam.account.handler.reaper.AccountReaper;
+import me.sonam.account.repo.entity.Account;
+import me.sonam.account.repo.entity.PasswordSecret;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the reaper deletes abandoned accounts and expired secrets in chunks and deletes the
+ * accounts from the downstream services with a token, recording a compensation when one of them fails.
+ */
+public class AccountReaperTest extends MockDownstreamTest {
+    private static final Logger LOG = LoggerFactory.getLogger(AccountReaperTest.class);
+
+    private static final String AUTHENTICATION_FAILURE_ID = "reaperAuthenticationDown";
+    private static final Set<String> deletePaths = ConcurrentHashMap.newKeySet();
+    private static final Map<String, String> authorizations = new ConcurrentHashMap<>();
+
+    @Autowired
+    private AccountReaper accountReaper;
+
+    @BeforeAll
+    static void respond() {
+        respondWith(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                deletePaths.add(request.getMethod() + " " + request.getPath());
+                authorizations.put(request.getMethod() + " " + request.getPath(),
+                        Objects.requireNonNullElse(request.getHeader(HttpHeaders.AUTHORIZATION), "none"));
+                if (request.getPath().equals("/authentications/" + AUTHENTICATION_FAILURE_ID)) {
+                    return new MockResponse().setResponseCode(500).setBody("authentication-rest-service is down");
+                }
+                return new MockResponse().setResponseCode(200).setBody("deleted");
+            }
+        });
+    }
+
+    @AfterEach
+    public void clearDeletePaths() {
+        deletePaths.clear();
+        authorizations.clear();
+    }
+
+    @Test
+    public void reap() {
+        LocalDateTime now = ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+        List<String> abandoned = List.of("reaperAbandoned1", "reaperAbandoned2", "reaperAbandoned3", AUTHENTICATION_FAILURE_ID);
+
+        for (String authenticationId : abandoned) {
+            save(authenticationId, false, now.minusDays(2));
+        }
+        save("reaperRecent", false, now.minusHours(1));
+        save("reaperActiveExpired", true, now.minusDays(2));
+        save("reaperActiveValid", true, now.plusHours(1));
+
+        StepVerifier.create(accountReaper.reap())
+                .assertNext(result -> {
+                    LOG.info("reap result: {}", result);
+                    assertThat(result.accounts()).isEqualTo(4);
+                    assertThat(result.passwordSecrets()).isEqualTo(1);
+                })
+                .verifyComplete();
+
+        for (String authenticationId : abandoned) {
+            StepVerifier.create(accountRepository.existsByAuthenticationId(authenticationId)).expectNext(false).verifyComplete();
+            StepVerifier.create(passwordSecretRepository.existsById(authenticationId)).expectNext(false).verifyComplete();
+            assertThat(deletePaths).contains("DELETE /users/" + authenticationId, "DELETE /authentications/" + authenticationId);
+            assertThat(authorizations).containsEntry("DELETE /users/" + authenticationId, "Bearer token")
+                    .containsEntry("DELETE /authentications/" + authenticationId, "Bearer token");
+        }
+
+        LOG.info("a inactive account whose secret is within the grace period and active accounts are kept");
+        StepVerifier.create(accountRepository.existsByAuthenticationId("reaperRecent")).expectNext(true).verifyComplete();
+        StepVerifier.create(passwordSecretRepository.existsById("reaperRecent")).expectNext(true).verifyComplete();
+        StepVerifier.create(accountRepository.existsByAuthenticationId("reaperActiveExpired")).expectNext(true).verifyComplete();
+        StepVerifier.create(passwordSecretRepository.existsById("reaperActiveExpired")).expectNext(false).verifyComplete();
+        StepVerifier.create(passwordSecretRepository.existsById("reaperActiveValid")).expectNext(true).verifyComplete();
+
+        StepVerifier.create(downstreamCompensationRepository.findByAuthenticationId(AUTHENTICATION_FAILURE_ID))
+                .assertNext(compensation -> {
+                    assertThat(compensation.getService()).isEqualTo("authentication-rest-service");
+                    assertThat(compensation.getAction()).isEqualTo("delete");
+                })
+                .verifyComplete();
+    }
+
+    private void save(String authenticationId, boolean active, LocalDateTime expireDate) {
+        accountRepository.save(new Account(authenticationId, authenticationId + "@sonam.email", active, LocalDateTime.now(), UUID.randomUUID())).block();
+        passwordSecretRepository.save(new PasswordSecret(authenticationId, "secret", expireDate)).block();
+    }
+}
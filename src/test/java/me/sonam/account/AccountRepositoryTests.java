@@ -1,7 +1,9 @@
 package me.sonam.account;
 
 import me.sonam.account.repo.AccountRepository;
+import me.sonam.account.repo.PasswordSecretRepository;
 import me.sonam.account.repo.entity.Account;
+import me.sonam.account.repo.entity.PasswordSecret;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,10 +15,13 @@ import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.data.r2dbc.dialect.H2Dialect;
 import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -32,9 +37,13 @@ public class AccountRepositoryTests {
     @Autowired
     private AccountRepository accounts;
 
+    @Autowired
+    private PasswordSecretRepository passwordSecrets;
+
     @AfterEach
     public void deleteALl() {
-        accounts.deleteAll().subscribe(unused -> LOG.info("deleted all accounts"));
+        accounts.deleteAll().doOnSuccess(unused -> LOG.info("deleted all accounts"))
+                .then(passwordSecrets.deleteAll()).block();
     }
 
     @Test
@@ -82,4 +91,54 @@ public class AccountRepositoryTests {
             });
         });
     }
+
+    @Test
+    public void concurrentSecretRotationLeavesOneValidSecret() {
+        final String authenticationId = "rotateSecret@sonam.me";
+        final LocalDateTime expireDate = LocalDateTime.now().plusHours(1);
+        passwordSecrets.save(new PasswordSecret(authenticationId, "first", LocalDateTime.now().minusHours(1))).block();
+
+        List<String> secrets = Flux.range(0, 20).map(i -> "secret" + i).collectList().block();
+
+        Flux.fromIterable(secrets)
+                .flatMap(secret -> passwordSecrets.rotate(new PasswordSecret(authenticationId, secret, expireDate))
+                        .subscribeOn(Schedulers.parallel()))
+                .then().as(StepVerifier::create).verifyComplete();
+
+        passwordSecrets.findAll().as(StepVerifier::create)
+                .assertNext(passwordSecret -> {
+                    LOG.info("secret after rotations: {}", passwordSecret.getSecret());
+                    assertThat(passwordSecret.getAuthenticationId()).isEqualTo(authenticationId);
+                    assertThat(secrets).contains(passwordSecret.getSecret());
+                    assertThat(passwordSecret.getExpireDate()).isAfter(LocalDateTime.now());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void findAccountSecretByEmail() {
+        final String email = "accountSecret@sonam.me";
+        final LocalDateTime expireDate = LocalDateTime.now().plusHours(1).withNano(0);
+        accounts.save(new Account(email, email, true, LocalDateTime.now(), UUID.randomUUID())).block();
+
+        accounts.findAccountSecretByEmail(email).as(StepVerifier::create)
+                .assertNext(accountSecret -> {
+                    assertThat(accountSecret.authenticationId()).isEqualTo(email);
+                    assertThat(accountSecret.active()).isTrue();
+                    assertThat(accountSecret.hasSecret()).isFalse();
+                })
+                .verifyComplete();
+
+        passwordSecrets.save(new PasswordSecret(email, "joined", expireDate)).block();
+
+        accounts.findAccountSecretByEmail(email).as(StepVerifier::create)
+                .assertNext(accountSecret -> {
+                    assertThat(accountSecret.email()).isEqualTo(email);
+                    assertThat(accountSecret.secret()).isEqualTo("joined");
+                    assertThat(accountSecret.expireDate()).isEqualTo(expireDate);
+                })
+                .verifyComplete();
+
+        accounts.findAccountSecretByEmail("noAccount@sonam.me").as(StepVerifier::create).verifyComplete();
+    }
 }
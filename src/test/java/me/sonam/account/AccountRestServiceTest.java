@@ -1,5 +1,6 @@
 package me.sonam.account;
 
+import me.sonam.account.handler.AccountExport;
 import me.sonam.account.repo.AccountRepository;
 import me.sonam.account.repo.PasswordSecretRepository;
 import me.sonam.account.repo.entity.Account;
@@ -24,8 +25,11 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -44,9 +48,11 @@ import java.nio.charset.Charset;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -110,8 +116,8 @@ public class AccountRestServiceTest {
 
     @AfterEach
     public void deleteALl() {
-        accountRepository.deleteAll().subscribe(unused -> LOG.info("deleted all accounts"));
-        passwordSecretRepository.deleteAll().subscribe(unused -> LOG.info("deleted all password secrets"));
+        accountRepository.deleteAll().doOnSuccess(unused -> LOG.info("deleted all accounts")).block();
+        passwordSecretRepository.deleteAll().doOnSuccess(unused -> LOG.info("deleted all password secrets")).block();
 
         LOG.info("request coountmockWebServer.getRequestCount(): {}",mockWebServer.getRequestCount());
 
@@ -134,7 +140,7 @@ public class AccountRestServiceTest {
 
     @AfterEach
     public void deleteAccountRepo() {
-        accountRepository.deleteAll().subscribe();
+        accountRepository.deleteAll().block();
     }
 
     @Test
@@ -146,6 +152,73 @@ public class AccountRestServiceTest {
 
     }
 
+    @Test
+    public void areAccountsActive() {
+        final String active = "areAccountsActive-" + UUID.randomUUID();
+        final String inactive = "areAccountsInactive-" + UUID.randomUUID();
+        final String missing = "areAccountsMissing-" + UUID.randomUUID();
+
+        accountRepository.save(new Account(active, active + "@sonam.email", true, LocalDateTime.now(), UUID.randomUUID())).block();
+        accountRepository.save(new Account(inactive, inactive + "@sonam.email", false, LocalDateTime.now(), UUID.randomUUID())).block();
+
+        EntityExchangeResult<Map<String, Boolean>> result = client.post().uri("/accounts/active")
+                .bodyValue(List.of(active, inactive, missing, active))
+                .exchange().expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<Map<String, Boolean>>() {}).returnResult();
+
+        LOG.info("active statuses: {}", result.getResponseBody());
+        assertThat(result.getResponseBody()).containsExactly(Map.entry(active, true), Map.entry(inactive, false), Map.entry(missing, false));
+    }
+
+    @Test
+    public void areAccountsActiveRejectsTooManyIds() {
+        List<String> authenticationIds = IntStream.rangeClosed(0, 500).mapToObj(i -> "tooMany" + i).toList();
+
+        EntityExchangeResult<Map> result = client.post().uri("/accounts/active")
+                .bodyValue(authenticationIds)
+                .exchange().expectStatus().isBadRequest()
+                .expectBody(Map.class).returnResult();
+
+        assertThat(result.getResponseBody().get("error")).isEqualTo("cannot check more than 500 authenticationIds in one request");
+    }
+
+    @Test
+    public void exportAccounts() {
+        LocalDateTime accessed = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < 5; i++) {
+            accountRepository.save(new Account("export" + i, "export" + i + "@sonam.email", i % 2 == 0,
+                    accessed.plusDays(i), UUID.randomUUID())).block();
+        }
+
+        List<AccountExport> all = webTestClient.mutateWith(mockJwt().authorities(new SimpleGrantedAuthority("SCOPE_account.export")))
+                .get().uri("/accounts/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange().expectStatus().isOk()
+                .returnResult(AccountExport.class).getResponseBody()
+                .collectList().block();
+
+        LOG.info("exported accounts: {}", all);
+        assertThat(all).hasSize(5);
+        assertThat(all).extracting(AccountExport::id).isSorted();
+
+        List<AccountExport> active = webTestClient.mutateWith(mockJwt().authorities(new SimpleGrantedAuthority("SCOPE_account.export")))
+                .get().uri("/accounts/export?active=true&accessedFrom=" + accessed.plusDays(1) + "&sort=accessDateTime")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange().expectStatus().isOk()
+                .returnResult(AccountExport.class).getResponseBody()
+                .collectList().block();
+
+        assertThat(active).extracting(AccountExport::authenticationId).containsExactly("export2", "export4");
+    }
+
+    @Test
+    public void exportAccountsRequiresAuthority() {
+        webTestClient.mutateWith(mockJwt().authorities(new SimpleGrantedAuthority("SCOPE_message.read")))
+                .get().uri("/accounts/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange().expectStatus().isForbidden();
+    }
+
     /**
      * this will test the account authentication password for an un-logged in user
      */
@@ -247,13 +320,14 @@ public class AccountRestServiceTest {
 
         LOG.info("response: {}", result.getResponseBody());
         assertThat(result.getResponseBody()).contains("account activated");
-        RecordedRequest request = mockWebServer.takeRequest();
-        assertThat(request.getMethod()).isEqualTo("PUT");
-        assertThat(request.getPath()).isEqualTo("/authentications/"+authenticationId+"/active");
 
-        request = mockWebServer.takeRequest();
+        LOG.info("authentication and user activations are sent concurrently so they can arrive in any order");
+        RecordedRequest request = mockWebServer.takeRequest();
+        RecordedRequest request2 = mockWebServer.takeRequest();
         assertThat(request.getMethod()).isEqualTo("PUT");
-        assertThat(request.getPath()).isEqualTo("/users/"+authenticationId+"/active");
+        assertThat(request2.getMethod()).isEqualTo("PUT");
+        assertThat(List.of(request.getPath(), request2.getPath())).containsExactlyInAnyOrder(
+                "/authentications/"+authenticationId+"/active", "/users/"+authenticationId+"/active");
 
         accountRepository.findByAuthenticationId(authenticationId).as(StepVerifier::create).
                 assertNext(account1 -> {
@@ -264,6 +338,36 @@ public class AccountRestServiceTest {
 
     }
 
+    /**
+     * the secret is consumed when the account is activated so clicking the link again is rejected
+     */
+    @Test
+    public void activateAccountTwice() throws InterruptedException {
+        final String authenticationId = "activateAccountTwice";
+        UUID userId = UUID.randomUUID();
+        Account account = new Account(authenticationId, "activateAccountTwice.test@sonam.email", false, LocalDateTime.now(), userId);
+        accountRepository.save(account).as(StepVerifier::create).expectNextCount(1).verifyComplete();
+
+        PasswordSecret passwordSecret = new PasswordSecret(authenticationId, "mysecret", ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime().plusHours(1));
+        passwordSecretRepository.save(passwordSecret).as(StepVerifier::create).expectNextCount(1).verifyComplete();
+
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200).setBody("activate response from authentication-rest-service endpoint is success"));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200).setBody("activate response from user-rest-service endpoint is success"));
+
+        client.get().uri("/accounts/" + authenticationId+"/active/mysecret")
+                .exchange().expectStatus().isOk();
+        mockWebServer.takeRequest();
+        mockWebServer.takeRequest();
+
+        EntityExchangeResult<Map> result = client.get().uri("/accounts/" + authenticationId+"/active/mysecret")
+                .exchange().expectStatus().isBadRequest().expectBody(Map.class).returnResult();
+
+        LOG.info("response: {}", result.getResponseBody().get("error"));
+        assertThat(result.getResponseBody().get("error")).isEqualTo("account has already been activated or try reactivation with email");
+
+        StepVerifier.create(passwordSecretRepository.existsById(authenticationId)).expectNext(false).verifyComplete();
+    }
+
     @Test
     public void activateAccountExpiredPassword() throws InterruptedException {
         UUID id = UUID.randomUUID();
@@ -321,26 +425,25 @@ public class AccountRestServiceTest {
 
     @Test
     public void testAccountDuplicatesWhenNewFlagTrue() {
-        LOG.info("testing count of unique rows when saving account multiple times");
+        LOG.info("testing a second new account with the same authenticationId is rejected by the unique index");
         String email = "sonam@sonam.me";
         UUID userId = UUID.randomUUID();
         Account account = new Account(email, email, true, LocalDateTime.now(), userId);
-        Mono<Account> accountMono = accountRepository.save(account);
+        accountRepository.save(account).as(StepVerifier::create).expectNextCount(1).verifyComplete();
         LOG.info("saved account with newFlag once with email: {}", email);
-        accountMono.subscribe(account1 -> LOG.info("account: {}", account1));
 
         accountRepository.countByAuthenticationId(email).as(StepVerifier::create)
                 .assertNext(count ->  {LOG.info("count now is: {}", count); assertThat(count).isEqualTo(1);})
                 .verifyComplete();
 
-
         account = new Account(email, email, true, LocalDateTime.now(), userId);
-        accountMono = accountRepository.save(account);
-        LOG.info("saved account with newFlag twice with userId: {}", email);
-        accountMono.subscribe(account1 -> LOG.info("account: {}", account1));
+        accountRepository.save(account).as(StepVerifier::create)
+                .expectError(DataIntegrityViolationException.class)
+                .verify();
+        LOG.info("saving account with newFlag twice with authenticationId: {} failed", email);
 
         accountRepository.countByAuthenticationId(email).as(StepVerifier::create)
-                .assertNext(count -> { LOG.info("count now is: {}", count); assertThat(count).isEqualTo(2);})
+                .assertNext(count -> { LOG.info("count now is: {}", count); assertThat(count).isEqualTo(1);})
             .verifyComplete();
     }
 
@@ -509,8 +612,8 @@ public class AccountRestServiceTest {
         assertThat(request.getPath()).startsWith("/emails");
 
         StepVerifier.create(mapFlux).expectSubscription().assertNext( map -> {
-            assertThat(map.get("message").toString()).isEqualTo("email successfully sent");
-            LOG.info("assert message contains email successfully sent");
+            assertThat(map.get("message").toString()).isEqualTo("email successfully queued");
+            LOG.info("assert message contains email successfully queued");
 
         }).verifyComplete();
 
@@ -827,7 +930,7 @@ public class AccountRestServiceTest {
                 .exchange().expectStatus().isOk().expectBody(Map.class).returnResult();
 
         LOG.info("response: {}", result.getResponseBody().get("message"));
-        assertThat(result.getResponseBody().get("message")).isEqualTo("email successfully sent");
+        assertThat(result.getResponseBody().get("message")).isEqualTo("email successfully queued");
         RecordedRequest request = mockWebServer.takeRequest();
         assertThat(request.getMethod()).isEqualTo("POST");
         assertThat(request.getPath()).startsWith("/oauth2/token");
@@ -0,0 +1,110 @@
+package me.sonam.account;
+
+import me.sonam.account.repo.entity.DownstreamCompensation;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test that the authentication-rest-service and user-rest-service activations are sent
+ * concurrently, using a MockWebServer stand-in that delays each service differently.
+ */
+public class ActivationFanOutTest extends MockDownstreamTest {
+    private static final Logger LOG = LoggerFactory.getLogger(ActivationFanOutTest.class);
+
+    private static final long AUTHENTICATION_DELAY_MS = 2000;
+    private static final long USER_DELAY_MS = 3000;
+    private static final String PARTIAL_FAILURE_ID = "fanOutPartialFailure";
+    private static final String BOTH_FAILURE_ID = "fanOutBothFailure";
+
+    @BeforeAll
+    static void respond() {
+        respondWith(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.contains("/" + BOTH_FAILURE_ID + "/")) {
+                    return new MockResponse().setResponseCode(500).setBody("service is down");
+                }
+                if (path.startsWith("/authentications/")) {
+                    return new MockResponse().setResponseCode(200).setHeadersDelay(AUTHENTICATION_DELAY_MS, TimeUnit.MILLISECONDS)
+                            .setBody("activate response from authentication-rest-service endpoint is success");
+                }
+                if (path.startsWith("/users/" + PARTIAL_FAILURE_ID)) {
+                    return new MockResponse().setResponseCode(500).setBody("user-rest-service is down");
+                }
+                if (path.startsWith("/users/")) {
+                    return new MockResponse().setResponseCode(200).setHeadersDelay(USER_DELAY_MS, TimeUnit.MILLISECONDS)
+                            .setBody("activate response from user-rest-service endpoint is success");
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+    }
+
+    @Test
+    public void activationLatencyIsTheSlowestCall() {
+        final String authenticationId = "fanOutLatency";
+        saveInactiveAccount(authenticationId);
+
+        long start = System.nanoTime();
+        EntityExchangeResult<String> result = client.mutate().responseTimeout(Duration.ofSeconds(10)).build()
+                .get().uri("/accounts/" + authenticationId + "/active/mysecret")
+                .exchange().expectStatus().isOk().expectBody(String.class).returnResult();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        LOG.info("activation took {} ms, authentication delay: {}, user delay: {}", elapsedMs, AUTHENTICATION_DELAY_MS, USER_DELAY_MS);
+        assertThat(result.getResponseBody()).contains("account activated");
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(USER_DELAY_MS);
+        assertThat(elapsedMs).isLessThan(AUTHENTICATION_DELAY_MS + USER_DELAY_MS);
+
+        StepVerifier.create(downstreamCompensationRepository.findByAuthenticationId(authenticationId)).verifyComplete();
+    }
+
+    @Test
+    public void partialActivationIsRecorded() {
+        saveInactiveAccount(PARTIAL_FAILURE_ID);
+
+        EntityExchangeResult<Map> result = client.mutate().responseTimeout(Duration.ofSeconds(10)).build()
+                .get().uri("/accounts/" + PARTIAL_FAILURE_ID + "/active/mysecret")
+                .exchange().expectStatus().isBadRequest().expectBody(Map.class).returnResult();
+
+        LOG.info("response: {}", result.getResponseBody());
+        assertThat(result.getResponseBody().get("error").toString()).startsWith("error on activate user rest service call");
+
+        StepVerifier.create(downstreamCompensationRepository.findByAuthenticationId(PARTIAL_FAILURE_ID))
+                .assertNext(compensation -> {
+                    assertThat(compensation.getService()).isEqualTo("user-rest-service");
+                    assertThat(compensation.getAction()).isEqualTo("activate");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void bothFailedActivationsAreRecorded() {
+        saveInactiveAccount(BOTH_FAILURE_ID);
+
+        EntityExchangeResult<Map> result = client.mutate().responseTimeout(Duration.ofSeconds(10)).build()
+                .get().uri("/accounts/" + BOTH_FAILURE_ID + "/active/mysecret")
+                .exchange().expectStatus().isBadRequest().expectBody(Map.class).returnResult();
+
+        LOG.info("response: {}", result.getResponseBody());
+        assertThat(result.getResponseBody().get("error").toString()).startsWith("error on authentication rest service call");
+
+        StepVerifier.create(downstreamCompensationRepository.findByAuthenticationId(BOTH_FAILURE_ID).map(DownstreamCompensation::getService).collectList())
+                .assertNext(services -> assertThat(services).containsExactlyInAnyOrder("authentication-rest-service", "user-rest-service"))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,160 @@
+package me.sonam.account;
+
+import me.sonam.account.handler.AccountCreateResult;
+import me.sonam.account.repo.entity.Account;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.mockJwt;
+import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.springSecurity;
+
+/**
+ * Test the ndjson POST /accounts bulk create against a MockWebServer stand-in for email-rest-service,
+ * including that the activation emails it queues are sent with a token.
+ */
+public class BulkAccountCreateTest extends MockDownstreamTest {
+    private static final Logger LOG = LoggerFactory.getLogger(BulkAccountCreateTest.class);
+
+    private static final BlockingQueue<String> emailAuthorizations = new LinkedBlockingQueue<>();
+
+    @Autowired
+    private ApplicationContext context;
+
+    private WebTestClient webTestClient;
+
+    @BeforeAll
+    static void respond() {
+        respondWith(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/emails")) {
+                    emailAuthorizations.add(Objects.requireNonNullElse(request.getHeader(HttpHeaders.AUTHORIZATION), "none"));
+                }
+                return new MockResponse().setResponseCode(201).setHeader("Content-Type", "application/json")
+                        .setBody("{\"message\":\"email successfully sent\"}");
+            }
+        });
+    }
+
+    @BeforeEach
+    public void setup() {
+        webTestClient = WebTestClient.bindToApplicationContext(context)
+                .apply(springSecurity())
+                .configureClient()
+                .responseTimeout(Duration.ofSeconds(10))
+                .build();
+        emailAuthorizations.clear();
+    }
+
+    @Test
+    public void createAccounts() {
+        accountRepository.save(new Account("bulkActive", "bulkActive@sonam.co", true, LocalDateTime.now(), UUID.randomUUID())).block();
+        accountRepository.save(new Account("bulkRetry", "bulkRetry@sonam.co", false, LocalDateTime.now(), UUID.randomUUID())).block();
+        accountRepository.save(new Account("bulkOther", "bulkTaken@sonam.co", false, LocalDateTime.now(), UUID.randomUUID())).block();
+
+        String body = String.join("\n",
+                line(UUID.randomUUID().toString(), "bulkNew1", "bulkNew1@sonam.co"),
+                line(UUID.randomUUID().toString(), "bulkNew2", "bulkNew2@sonam.co"),
+                line(UUID.randomUUID().toString(), "bulkNew1", "bulkNew1Again@sonam.co"),
+                line(UUID.randomUUID().toString(), "bulkActive", "bulkActive2@sonam.co"),
+                line(UUID.randomUUID().toString(), "bulkRetry", "bulkRetry@sonam.co"),
+                line(UUID.randomUUID().toString(), "bulkTaken", "bulkTaken@sonam.co"),
+                line("not-a-uuid", "bulkInvalid", "bulkInvalid@sonam.co"));
+
+        List<AccountCreateResult> results = webTestClient.mutateWith(mockJwt().jwt(jwt("bulkAdmin")))
+                .post().uri("/accounts")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange().expectStatus().isOk()
+                .returnResult(AccountCreateResult.class).getResponseBody()
+                .collectList().block();
+
+        LOG.info("results: {}", results);
+        assertThat(results).extracting(AccountCreateResult::status).containsExactly(
+                AccountCreateResult.CREATED, AccountCreateResult.CREATED, AccountCreateResult.REJECTED,
+                AccountCreateResult.REJECTED, AccountCreateResult.CREATED, AccountCreateResult.REJECTED,
+                AccountCreateResult.INVALID);
+        assertThat(results.get(2).message()).isEqualTo("duplicate authenticationId in request");
+        assertThat(results.get(3).message()).isEqualTo("Account is already active with authenticationId");
+        assertThat(results.get(5).message()).isEqualTo("a user with this email already exists");
+
+        StepVerifier.create(accountRepository.findByAuthenticationId("bulkRetry"))
+                .assertNext(account -> assertThat(account.getActive()).isFalse()).verifyComplete();
+        StepVerifier.create(accountRepository.countByAuthenticationId("bulkNew1")).expectNext(1).verifyComplete();
+        StepVerifier.create(passwordSecretRepository.findAllById(List.of("bulkNew1", "bulkNew2", "bulkRetry")).count())
+                .expectNext(3L).verifyComplete();
+    }
+
+    @Test
+    public void manyBatches() {
+        String body = IntStream.range(0, 10)
+                .mapToObj(i -> line(UUID.randomUUID().toString(), "bulkMany" + i, "bulkMany" + i + "@sonam.co"))
+                .collect(Collectors.joining("\n"));
+
+        List<AccountCreateResult> results = webTestClient.mutateWith(mockJwt().jwt(jwt("bulkAdmin")))
+                .post().uri("/accounts")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange().expectStatus().isOk()
+                .returnResult(AccountCreateResult.class).getResponseBody()
+                .collectList().block();
+
+        assertThat(results).hasSize(10).allMatch(result -> result.status().equals(AccountCreateResult.CREATED));
+        assertThat(results).extracting(AccountCreateResult::authenticationId)
+                .containsExactlyElementsOf(IntStream.range(0, 10).mapToObj(i -> "bulkMany" + i).toList());
+        StepVerifier.create(accountRepository.findAll().count()).expectNext(10L).verifyComplete();
+    }
+
+    @Test
+    public void activationEmailsCarryAToken() throws InterruptedException {
+        String body = String.join("\n",
+                line(UUID.randomUUID().toString(), "bulkToken1", "bulkToken1@sonam.co"),
+                line(UUID.randomUUID().toString(), "bulkToken2", "bulkToken2@sonam.co"));
+
+        webTestClient.mutateWith(mockJwt().jwt(jwt("bulkAdmin")))
+                .post().uri("/accounts")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange().expectStatus().isOk()
+                .returnResult(AccountCreateResult.class).getResponseBody()
+                .collectList().block();
+
+        assertThat(emailAuthorizations.poll(5, TimeUnit.SECONDS)).isEqualTo("Bearer token");
+        assertThat(emailAuthorizations.poll(5, TimeUnit.SECONDS)).isEqualTo("Bearer token");
+    }
+
+    private static String line(String userId, String authenticationId, String email) {
+        return "{\"userId\":\"" + userId + "\",\"authenticationId\":\"" + authenticationId + "\",\"email\":\"" + email + "\"}";
+    }
+
+    private static Jwt jwt(String subjectName) {
+        return new Jwt("token", null, null, Map.of("alg", "none"), Map.of("sub", subjectName));
+    }
+}
@@ -0,0 +1,119 @@
+package me.sonam.account;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test a request is answered 504 at the deadline from the X-Request-Timeout header while the
+ * downstream services are slow, that the downstream calls get the remaining budget in the header,
+ * that a activation past its deadline still records the failed downstream activation, and that a
+ * request arriving with no budget left is not handled.
+ */
+public class DeadlineTest extends MockDownstreamTest {
+    private static final Logger LOG = LoggerFactory.getLogger(DeadlineTest.class);
+
+    private static final long SLOW_MS = 3000;
+    private static final long BUDGET_MS = 500;
+    private static final Set<Long> forwardedBudgets = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void respond() {
+        respondWith(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String budget = request.getHeader("X-Request-Timeout");
+                if (budget != null) {
+                    forwardedBudgets.add(Long.parseLong(budget));
+                }
+                if (request.getPath().startsWith("/authentications/deadlinePartial")) {
+                    return new MockResponse().setResponseCode(200).setBody("authentication activated");
+                }
+                return new MockResponse().setResponseCode(200).setHeadersDelay(SLOW_MS, TimeUnit.MILLISECONDS)
+                        .setBody("slow activate response");
+            }
+        });
+    }
+
+    @AfterEach
+    public void clearForwardedBudgets() {
+        forwardedBudgets.clear();
+    }
+
+    @Test
+    public void slowDownstreamIsCancelledAtTheDeadline() {
+        final String authenticationId = "deadlineSlow";
+        saveInactiveAccount(authenticationId);
+        double handled = count("handler");
+        double cancelled = count("cancelled");
+
+        long start = System.nanoTime();
+        client.mutate().responseTimeout(Duration.ofSeconds(10)).build()
+                .get().uri("/accounts/" + authenticationId + "/active/mysecret")
+                .header("X-Request-Timeout", String.valueOf(BUDGET_MS))
+                .exchange().expectStatus().isEqualTo(504);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        LOG.info("request took {} ms, forwarded budgets: {}", elapsedMs, forwardedBudgets);
+        assertThat(elapsedMs).isLessThan(SLOW_MS);
+        assertThat(forwardedBudgets).isNotEmpty().allMatch(budget -> budget > 0 && budget <= BUDGET_MS);
+
+        // the secret was consumed so the request is not cancelled, its downstream calls time out instead
+        assertThat(count("handler")).isEqualTo(handled + 1);
+        assertThat(count("cancelled")).isEqualTo(cancelled);
+    }
+
+    @Test
+    public void partialActivationPastTheDeadlineIsRecorded() {
+        final String authenticationId = "deadlinePartial";
+        saveInactiveAccount(authenticationId);
+
+        client.mutate().responseTimeout(Duration.ofSeconds(10)).build()
+                .get().uri("/accounts/" + authenticationId + "/active/mysecret")
+                .header("X-Request-Timeout", String.valueOf(BUDGET_MS))
+                .exchange().expectStatus().isEqualTo(504);
+
+        StepVerifier.create(downstreamCompensationRepository.findByAuthenticationId(authenticationId))
+                .assertNext(compensation -> {
+                    assertThat(compensation.getService()).isEqualTo("user-rest-service");
+                    assertThat(compensation.getAction()).isEqualTo("activate");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void noBudgetLeftIsNotHandled() {
+        double arrived = count("arrival");
+
+        client.get().uri("/accounts/deadlineNone/active")
+                .header("X-Request-Timeout", "0")
+                .exchange().expectStatus().isEqualTo(504)
+                .expectBody(String.class).value(body -> assertThat(body).contains("request deadline exceeded"));
+
+        assertThat(count("arrival")).isEqualTo(arrived + 1);
+    }
+
+    private double count(String stage) {
+        Counter counter = meterRegistry.find("account.deadline.exceeded").tag("stage", stage).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
@@ -0,0 +1,94 @@
+package me.sonam.account;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import me.sonam.account.config.DownstreamWebClients;
+import me.sonam.account.handler.DownstreamUnavailableException;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the downstream circuit breaker opens on failing calls and then fails fast without calling
+ * the service, that a slow service times out, and that readiness reports the open circuit without failing.
+ */
+@TestPropertySource(properties = {"user-rest-service.guard.minimum-number-of-calls=2", "user-rest-service.guard.sliding-window-size=2",
+        "user-rest-service.guard.wait-in-open=1h", "authentication-rest-service.guard.response-timeout=500ms"})
+public class DownstreamGuardTest extends MockDownstreamTest {
+    private static final Logger LOG = LoggerFactory.getLogger(DownstreamGuardTest.class);
+
+    private static final AtomicInteger userCalls = new AtomicInteger();
+
+    @Autowired
+    private DownstreamWebClients downstreamWebClients;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void respond() {
+        respondWith(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().startsWith("/users/")) {
+                    userCalls.incrementAndGet();
+                    return new MockResponse().setResponseCode(500).setBody("user-rest-service is down");
+                }
+                return new MockResponse().setResponseCode(200).setHeadersDelay(2, TimeUnit.SECONDS)
+                        .setBody("too late");
+            }
+        });
+    }
+
+    @Test
+    public void openCircuitFailsFast() {
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(deleteUser()).expectError(WebClientResponseException.InternalServerError.class).verify();
+        }
+        assertThat(userCalls.get()).isEqualTo(2);
+
+        LOG.info("circuit is open, the call fails without reaching user-rest-service");
+        StepVerifier.create(deleteUser())
+                .expectErrorSatisfies(throwable -> {
+                    assertThat(throwable).isInstanceOf(DownstreamUnavailableException.class);
+                    assertThat(throwable.getMessage()).isEqualTo("user-rest-service is unavailable, circuit breaker is open");
+                })
+                .verify();
+        assertThat(userCalls.get()).isEqualTo(2);
+
+        assertThat(meterRegistry.get("resilience4j.circuitbreaker.state")
+                .tag("name", DownstreamWebClients.USER_REST_SERVICE).tag("state", "open").gauge().value()).isEqualTo(1);
+
+        client.get().uri("/accounts/api/health/readiness")
+                .exchange().expectStatus().isOk()
+                .expectBody().jsonPath("$.circuitBreakers['user-rest-service']").isEqualTo("OPEN");
+    }
+
+    @Test
+    public void slowServiceTimesOut() {
+        StepVerifier.create(downstreamWebClients.authentication().delete().uri(root() + "/authentications/slow")
+                        .retrieve().bodyToMono(String.class))
+                .expectErrorSatisfies(throwable -> {
+                    assertThat(throwable).isInstanceOf(DownstreamUnavailableException.class);
+                    assertThat(throwable.getMessage()).startsWith("authentication-rest-service did not respond within");
+                })
+                .verify();
+    }
+
+    private Mono<String> deleteUser() {
+        return downstreamWebClients.user().delete().uri(root() + "/users/guarded").retrieve().bodyToMono(String.class);
+    }
+}
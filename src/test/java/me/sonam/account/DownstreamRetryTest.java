@@ -0,0 +1,106 @@
+package me.sonam.account;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import me.sonam.account.config.DownstreamWebClients;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the activation puts are retried after a transient failure and hedged when the first
+ * attempt is slow, against a MockWebServer that answers the first call of a path differently.
+ */
+@TestPropertySource(properties = {"downstream-retry.min-backoff=10ms", "downstream-retry.hedge.enabled=true",
+        "downstream-retry.hedge.max-delay=200ms"})
+public class DownstreamRetryTest extends MockDownstreamTest {
+    private static final Logger LOG = LoggerFactory.getLogger(DownstreamRetryTest.class);
+
+    private static final String RETRY_ID = "retryTransient";
+    private static final String HEDGE_ID = "hedgeSlow";
+    private static final long SLOW_MS = 3000;
+    private static final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void respond() {
+        respondWith(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                int call = calls.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+
+                if (path.equals("/authentications/" + RETRY_ID + "/active") && call == 1) {
+                    return new MockResponse().setResponseCode(503).setBody("authentication-rest-service is restarting");
+                }
+                if (path.equals("/users/" + HEDGE_ID + "/active") && call == 1) {
+                    return new MockResponse().setResponseCode(200).setHeadersDelay(SLOW_MS, TimeUnit.MILLISECONDS)
+                            .setBody("slow activate response");
+                }
+                return new MockResponse().setResponseCode(200).setBody("activate response");
+            }
+        });
+    }
+
+    @Test
+    public void transientFailureIsRetried() {
+        saveInactiveAccount(RETRY_ID);
+        double retries = count("downstream.retries", DownstreamWebClients.AUTHENTICATION_REST_SERVICE);
+
+        client.mutate().responseTimeout(Duration.ofSeconds(10)).build()
+                .get().uri("/accounts/" + RETRY_ID + "/active/mysecret")
+                .exchange().expectStatus().isOk();
+
+        assertThat(calls.get("/authentications/" + RETRY_ID + "/active").get()).isEqualTo(2);
+        assertThat(count("downstream.retries", DownstreamWebClients.AUTHENTICATION_REST_SERVICE)).isEqualTo(retries + 1);
+        StepVerifier.create(downstreamCompensationRepository.findByAuthenticationId(RETRY_ID)).verifyComplete();
+    }
+
+    @Test
+    public void slowCallIsHedged() {
+        saveInactiveAccount(HEDGE_ID);
+        double hedgeWins = count("downstream.hedge.wins", DownstreamWebClients.USER_REST_SERVICE);
+        long timed = timed(DownstreamWebClients.USER_REST_SERVICE);
+
+        long start = System.nanoTime();
+        client.mutate().responseTimeout(Duration.ofSeconds(10)).build()
+                .get().uri("/accounts/" + HEDGE_ID + "/active/mysecret")
+                .exchange().expectStatus().isOk();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        LOG.info("hedged activation took {} ms", elapsedMs);
+        assertThat(elapsedMs).isLessThan(SLOW_MS);
+        assertThat(calls.get("/users/" + HEDGE_ID + "/active").get()).isEqualTo(2);
+        assertThat(count("downstream.hedge.wins", DownstreamWebClients.USER_REST_SERVICE)).isEqualTo(hedgeWins + 1);
+        // the hedge that answered and the first attempt it cut short
+        assertThat(timed(DownstreamWebClients.USER_REST_SERVICE)).isEqualTo(timed + 2);
+    }
+
+    private long timed(String service) {
+        Timer timer = meterRegistry.find("downstream.latency").tag("service", service).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private double count(String name, String service) {
+        Counter counter = meterRegistry.find(name).tag("service", service).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
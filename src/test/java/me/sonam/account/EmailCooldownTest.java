@@ -0,0 +1,127 @@
+package me.sonam.account;
+
+import me.sonam.account.repo.entity.Account;
+import me.sonam.account.repo.entity.PasswordSecret;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test a secret email asked for again within the cooldown re-sends the secret already issued instead
+ * of writing a new one unless it was replaced meanwhile, and that a different kind of email still issues
+ * a new secret.  The {@link Absorb} cases run with the cooldown absorbing.
+ */
+@TestPropertySource(properties = {"email-cooldown.mode=resend", "email-cooldown.window=1h"})
+public class EmailCooldownTest extends MockDownstreamTest {
+    private static final Logger LOG = LoggerFactory.getLogger(EmailCooldownTest.class);
+
+    private static final BlockingQueue<String> emails = new LinkedBlockingQueue<>();
+
+    @BeforeAll
+    static void respond() {
+        respondWith(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                emails.add(request.getBody().readUtf8());
+                return new MockResponse().setResponseCode(201).setHeader("Content-Type", "application/json")
+                        .setBody("{\"message\":\"email successfully sent\"}");
+            }
+        });
+    }
+
+    @AfterEach
+    public void clearEmails() {
+        emails.clear();
+    }
+
+    @Test
+    public void resendWithinCooldown() throws InterruptedException {
+        final String authenticationId = "cooldownResend";
+        accountRepository.save(new Account(authenticationId, authenticationId + "@sonam.co", true, LocalDateTime.now(), UUID.randomUUID())).block();
+        String email = URLEncoder.encode(authenticationId + "@sonam.co", Charset.defaultCharset());
+
+        client.put().uri("/accounts/email/" + email + "/password-secret").exchange().expectStatus().isOk();
+        PasswordSecret issued = passwordSecretRepository.findById(authenticationId).block();
+        assertThat(nextEmail()).contains(issued.getSecret());
+
+        LOG.info("asking again within the cooldown sends the same secret without writing a new one");
+        client.put().uri("/accounts/email/" + email + "/password-secret").exchange().expectStatus().isOk();
+        PasswordSecret resent = passwordSecretRepository.findById(authenticationId).block();
+        assertThat(resent.getSecret()).isEqualTo(issued.getSecret());
+        assertThat(resent.getExpireDate()).isEqualTo(issued.getExpireDate());
+        assertThat(nextEmail()).contains(issued.getSecret());
+
+        LOG.info("a activation link is a different email and gets a new secret");
+        client.put().uri("/accounts/active/email/" + email + "/password-secret").exchange().expectStatus().isOk();
+        PasswordSecret activation = passwordSecretRepository.findById(authenticationId).block();
+        assertThat(activation.getSecret()).isNotEqualTo(issued.getSecret());
+        assertThat(nextEmail()).contains(activation.getSecret());
+    }
+
+    @Test
+    public void replacedSecretIsNotResent() throws InterruptedException {
+        final String authenticationId = "cooldownReplaced";
+        accountRepository.save(new Account(authenticationId, authenticationId + "@sonam.co", true, LocalDateTime.now(), UUID.randomUUID())).block();
+        String email = URLEncoder.encode(authenticationId + "@sonam.co", Charset.defaultCharset());
+
+        client.put().uri("/accounts/email/" + email + "/password-secret").exchange().expectStatus().isOk();
+        PasswordSecret issued = passwordSecretRepository.findById(authenticationId).block();
+        assertThat(nextEmail()).contains(issued.getSecret());
+
+        LOG.info("another instance replaces the secret");
+        passwordSecretRepository.save(new PasswordSecret(authenticationId, "replaced", issued.getExpireDate())).block();
+
+        client.put().uri("/accounts/email/" + email + "/password-secret").exchange().expectStatus().isOk();
+        PasswordSecret reissued = passwordSecretRepository.findById(authenticationId).block();
+        assertThat(reissued.getSecret()).isNotEqualTo(issued.getSecret()).isNotEqualTo("replaced");
+        assertThat(nextEmail()).contains(reissued.getSecret());
+    }
+
+    @Nested
+    @TestPropertySource(properties = "email-cooldown.mode=absorb")
+    class Absorb {
+        @Autowired
+        private WebTestClient absorbingClient;
+
+        @Test
+        public void absorbWithinCooldown() throws InterruptedException {
+            final String authenticationId = "cooldownAbsorb";
+            accountRepository.save(new Account(authenticationId, authenticationId + "@sonam.co", true, LocalDateTime.now(), UUID.randomUUID())).block();
+            String email = URLEncoder.encode(authenticationId + "@sonam.co", Charset.defaultCharset());
+
+            absorbingClient.put().uri("/accounts/email/" + email + "/password-secret").exchange().expectStatus().isOk();
+            PasswordSecret issued = passwordSecretRepository.findById(authenticationId).block();
+            assertThat(nextEmail()).contains(issued.getSecret());
+
+            LOG.info("asking again within the cooldown sends nothing and keeps the secret");
+            absorbingClient.put().uri("/accounts/email/" + email + "/password-secret").exchange().expectStatus().isOk();
+            assertThat(passwordSecretRepository.findById(authenticationId).block().getSecret()).isEqualTo(issued.getSecret());
+            assertThat(emails.poll(1, TimeUnit.SECONDS)).as("no email sent").isNull();
+        }
+    }
+
+    private static String nextEmail() throws InterruptedException {
+        String email = emails.poll(5, TimeUnit.SECONDS);
+        assertThat(email).as("email sent to email-rest-service").isNotNull();
+        return email;
+    }
+}
@@ -0,0 +1,100 @@
+package me.sonam.account;
+
+import me.sonam.account.repo.EmailOutboxRepository;
+import me.sonam.account.repo.entity.EmailOutbox;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test a email left to the sweep is sent with a token although no request is behind it, and that its
+ * retry after a failed attempt carries a token too.  The sweeper is turned on here only, the context is
+ * closed afterwards so it does not pick up the rows of later test classes.
+ */
+@DirtiesContext
+@TestPropertySource(properties = {"email-outbox.enabled=true", "email-outbox.poll-interval=100ms", "email-outbox.backoff=10ms"})
+public class EmailOutboxSweepTest extends MockDownstreamTest {
+    private static final Logger LOG = LoggerFactory.getLogger(EmailOutboxSweepTest.class);
+
+    private static final BlockingQueue<String> authorizations = new LinkedBlockingQueue<>();
+    private static final AtomicInteger emails = new AtomicInteger();
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @BeforeAll
+    static void respond() {
+        respondWith(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (!request.getPath().startsWith("/emails")) {
+                    return new MockResponse().setResponseCode(404);
+                }
+                authorizations.add(Objects.requireNonNullElse(request.getHeader(HttpHeaders.AUTHORIZATION), "none"));
+
+                // the first attempt fails so the email is retried by a later sweep
+                if (emails.getAndIncrement() == 0) {
+                    return new MockResponse().setResponseCode(500);
+                }
+                return new MockResponse().setResponseCode(201).setHeader("Content-Type", "application/json")
+                        .setBody("{\"message\":\"email successfully sent\"}");
+            }
+        });
+    }
+
+    @BeforeEach
+    @AfterEach
+    public void deleteOutbox() {
+        emailOutboxRepository.deleteAll().block();
+        authorizations.clear();
+        emails.set(0);
+    }
+
+    @Test
+    public void sweptRetryCarriesAToken() throws InterruptedException {
+        LocalDateTime now = ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime();
+        emailOutboxRepository.save(new EmailOutbox("swept@sonam.email", "swept", "a email left to the sweep", now, now)).block();
+
+        String failed = authorizations.poll(5, TimeUnit.SECONDS);
+        String retried = authorizations.poll(5, TimeUnit.SECONDS);
+        LOG.info("authorization of the failed attempt: {}, of the retry: {}", failed, retried);
+
+        assertThat(failed).isEqualTo("Bearer token");
+        assertThat(retried).isEqualTo("Bearer token");
+        assertThat(awaitEmpty(Duration.ofSeconds(5))).isTrue();
+    }
+
+    private boolean awaitEmpty(Duration timeout) throws InterruptedException {
+        long until = System.nanoTime() + timeout.toNanos();
+
+        while (System.nanoTime() < until) {
+            if (emailOutboxRepository.count().block() == 0) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+}
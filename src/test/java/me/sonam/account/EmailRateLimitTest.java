@@ -0,0 +1,75 @@
+package me.sonam.account;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import me.sonam.account.config.RepositoryObservationConfig;
+import me.sonam.account.repo.AccountRepository;
+import me.sonam.account.repo.entity.Account;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.TestPropertySource;
+
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the email sending routes are rate limited per email, a request over the limit is answered
+ * 429 with Retry-After without reading the account, and other emails are not limited.
+ */
+@TestPropertySource(properties = {"email-rate-limit.routes.authentication-id.capacity=2",
+        "email-rate-limit.routes.authentication-id.refill-every=1h"})
+public class EmailRateLimitTest extends MockDownstreamTest {
+    private static final Logger LOG = LoggerFactory.getLogger(EmailRateLimitTest.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void rateLimitPerEmail() {
+        String email = save("rateLimited");
+        String otherEmail = save("notRateLimited");
+
+        for (int i = 0; i < 2; i++) {
+            client.put().uri("/accounts/email/" + email + "/authentication-id").exchange().expectStatus().isOk();
+        }
+
+        LOG.info("the third request for the same email is rejected before the account is read");
+        long accountCalls = accountRepositoryCalls();
+        double rejected = rejected();
+
+        client.put().uri("/accounts/email/" + email.toUpperCase() + "/authentication-id")
+                .exchange().expectStatus().isEqualTo(429)
+                .expectHeader().value(HttpHeaders.RETRY_AFTER, retryAfter -> assertThat(Long.parseLong(retryAfter)).isPositive())
+                .expectBody(String.class).value(body -> assertThat(body).contains("too many requests for this email"));
+
+        assertThat(accountRepositoryCalls()).isEqualTo(accountCalls);
+        assertThat(rejected()).isEqualTo(rejected + 1);
+
+        LOG.info("another email and the other routes have their own buckets");
+        client.put().uri("/accounts/email/" + otherEmail + "/authentication-id").exchange().expectStatus().isOk();
+        client.put().uri("/accounts/email/" + email + "/password-secret").exchange().expectStatus().isOk();
+    }
+
+    private String save(String authenticationId) {
+        String email = authenticationId + "@sonam.co";
+        accountRepository.save(new Account(authenticationId, email, true, LocalDateTime.now(), UUID.randomUUID())).block();
+        return URLEncoder.encode(email, Charset.defaultCharset());
+    }
+
+    private double rejected() {
+        return meterRegistry.counter("account.rate-limit.rejected", "route", "authentication-id").count();
+    }
+
+    private long accountRepositoryCalls() {
+        return meterRegistry.find(RepositoryObservationConfig.REPOSITORY_OBSERVATION)
+                .tag("repository", AccountRepository.class.getSimpleName())
+                .timers().stream().mapToLong(Timer::count).sum();
+    }
+}
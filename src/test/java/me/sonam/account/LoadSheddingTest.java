@@ -0,0 +1,90 @@
+package me.sonam.account;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test requests over a route group's concurrency limit are shed with 503 and Retry-After, and that
+ * a busy higher priority group sheds the email routes but not the reads.
+ */
+@TestPropertySource(properties = {"concurrency-limit.initial-limit=1", "concurrency-limit.min-limit=1", "concurrency-limit.max-limit=1"})
+public class LoadSheddingTest extends MockDownstreamTest {
+    private static final long SLOW_MS = 2000;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeAll
+    static void respond() {
+        respondWith(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(200).setHeadersDelay(SLOW_MS, TimeUnit.MILLISECONDS)
+                        .setBody("slow activate response");
+            }
+        });
+    }
+
+    @Test
+    public void shedOverTheLimit() throws Exception {
+        saveInactiveAccount("shedSlow");
+        CompletableFuture<Void> slow = activateInBackground("shedSlow");
+        awaitInFlight("write");
+
+        double rejected = count("write", "limit");
+        client.get().uri("/accounts/shedOther/active/mysecret")
+                .exchange().expectStatus().isEqualTo(503)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1");
+        assertThat(count("write", "limit")).isEqualTo(rejected + 1);
+
+        slow.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void readsArePrioritisedOverEmail() throws Exception {
+        saveInactiveAccount("shedPriority");
+        CompletableFuture<Void> slow = activateInBackground("shedPriority");
+        awaitInFlight("write");
+
+        client.get().uri("/accounts/shedPriority/active").exchange().expectStatus().isOk();
+
+        double rejected = count("email", "priority");
+        client.put().uri("/accounts/email/shedPriority@sonam.email/authentication-id")
+                .exchange().expectStatus().isEqualTo(503);
+        assertThat(count("email", "priority")).isEqualTo(rejected + 1);
+
+        slow.get(10, TimeUnit.SECONDS);
+    }
+
+    private CompletableFuture<Void> activateInBackground(String authenticationId) {
+        return CompletableFuture.runAsync(() -> client.mutate().responseTimeout(Duration.ofSeconds(10)).build()
+                .get().uri("/accounts/" + authenticationId + "/active/mysecret")
+                .exchange().expectStatus().isOk());
+    }
+
+    private void awaitInFlight(String group) throws InterruptedException {
+        for (int i = 0; i < 100 && meterRegistry.get("account.concurrency.in-flight").tag("group", group).gauge().value() < 1; i++) {
+            Thread.sleep(20);
+        }
+        assertThat(meterRegistry.get("account.concurrency.in-flight").tag("group", group).gauge().value()).isEqualTo(1);
+    }
+
+    private double count(String group, String reason) {
+        Counter counter = meterRegistry.find("account.concurrency.rejected").tag("group", group).tag("reason", reason).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
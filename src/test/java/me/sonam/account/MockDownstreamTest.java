@@ -0,0 +1,135 @@
+package me.sonam.account;
+
+import me.sonam.account.repo.AccountRepository;
+import me.sonam.account.repo.DownstreamCompensationRepository;
+import me.sonam.account.repo.PasswordSecretRepository;
+import me.sonam.account.repo.entity.Account;
+import me.sonam.account.repo.entity.PasswordSecret;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * Base of the tests that run the service against a MockWebServer stand-in for user-rest-service,
+ * authentication-rest-service, email-rest-service and the token endpoint.  The stand-in is started once
+ * and shared, so test classes without their own properties share one application context.  A test class
+ * answers the downstream calls with {@link #respondWith(Dispatcher)}, token requests are always answered.
+ * The tables are emptied after each test.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {Application.class}, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public abstract class MockDownstreamTest {
+    private static final Dispatcher EMAIL_SENT = new Dispatcher() {
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            return new MockResponse().setResponseCode(201).setHeader("Content-Type", "application/json")
+                    .setBody("{\"message\":\"email successfully sent\"}");
+        }
+    };
+
+    private static volatile Dispatcher dispatcher = EMAIL_SENT;
+    protected static final MockWebServer mockWebServer = start();
+
+    @MockBean
+    protected ReactiveJwtDecoder jwtDecoder;
+
+    @Autowired
+    protected WebTestClient client;
+
+    @Autowired
+    protected AccountRepository accountRepository;
+
+    @Autowired
+    protected PasswordSecretRepository passwordSecretRepository;
+
+    @Autowired
+    protected DownstreamCompensationRepository downstreamCompensationRepository;
+
+    private static MockWebServer start() {
+        MockWebServer mockWebServer = new MockWebServer();
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                if (request.getPath().startsWith("/oauth2/token")) {
+                    return new MockResponse().setResponseCode(200).setHeader("Content-Type", "application/json")
+                            .setBody("{\"access_token\": \"token\", \"token_type\": \"Bearer\", \"expires_in\": 299}");
+                }
+                return dispatcher.dispatch(request);
+            }
+        });
+        try {
+            mockWebServer.start();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return mockWebServer;
+    }
+
+    @DynamicPropertySource
+    static void downstreamRoots(DynamicPropertyRegistry r) {
+        r.add("email-rest-service.root", MockDownstreamTest::root);
+        r.add("authentication-rest-service.root", MockDownstreamTest::root);
+        r.add("user-rest-service.root", MockDownstreamTest::root);
+        r.add("auth-server.root", MockDownstreamTest::root);
+    }
+
+    /**
+     * answer the downstream calls of this test class with the dispatcher, by default every call is
+     * answered as a email that was sent
+     */
+    protected static void respondWith(Dispatcher testDispatcher) {
+        dispatcher = testDispatcher;
+    }
+
+    @AfterAll
+    public static void resetDispatcher() {
+        dispatcher = EMAIL_SENT;
+    }
+
+    @AfterEach
+    public void deleteAll() {
+        accountRepository.deleteAll().then(passwordSecretRepository.deleteAll())
+                .then(downstreamCompensationRepository.deleteAll()).block();
+    }
+
+    protected static String root() {
+        return "http://localhost:" + mockWebServer.getPort();
+    }
+
+    protected void saveAccount(String authenticationId, boolean active) {
+        Account account = new Account(authenticationId, authenticationId + "@sonam.email", active, LocalDateTime.now(), UUID.randomUUID());
+        accountRepository.save(account).as(StepVerifier::create).expectNextCount(1).verifyComplete();
+    }
+
+    /**
+     * a inactive account with the secret "mysecret" that expires in a hour
+     */
+    protected void saveInactiveAccount(String authenticationId) {
+        saveAccount(authenticationId, false);
+
+        PasswordSecret passwordSecret = new PasswordSecret(authenticationId, "mysecret",
+                ZonedDateTime.now(ZoneOffset.UTC).toLocalDateTime().plusHours(1));
+        passwordSecretRepository.save(passwordSecret).as(StepVerifier::create).expectNextCount(1).verifyComplete();
+    }
+}
@@ -0,0 +1,63 @@
+package me.sonam.account;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.Connection;
+import me.sonam.account.config.MonitoredConnectionPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test the acquire timer and exhaustion tracking of the connection pool
+ */
+public class MonitoredConnectionPoolTest {
+    private ConnectionPool connectionPool;
+    private PoolMetrics poolMetrics;
+    private SimpleMeterRegistry meterRegistry;
+    private MonitoredConnectionPool monitoredConnectionPool;
+
+    @BeforeEach
+    public void setup() {
+        connectionPool = mock(ConnectionPool.class);
+        poolMetrics = mock(PoolMetrics.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        when(connectionPool.getMetrics()).thenReturn(Optional.of(poolMetrics));
+        when(poolMetrics.getMaxAllocatedSize()).thenReturn(2);
+        monitoredConnectionPool = new MonitoredConnectionPool(connectionPool, meterRegistry);
+    }
+
+    @Test
+    public void acquireIsTimed() {
+        when(connectionPool.create()).thenReturn(Mono.just(mock(Connection.class)));
+
+        StepVerifier.create(monitoredConnectionPool.create()).expectNextCount(1).verifyComplete();
+
+        assertThat(meterRegistry.get("r2dbc.pool.acquire").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void exhaustedUntilCallersStopWaiting() throws InterruptedException {
+        when(poolMetrics.acquiredSize()).thenReturn(2);
+        when(poolMetrics.pendingAcquireSize()).thenReturn(0);
+        assertThat(monitoredConnectionPool.exhaustedFor()).isEqualTo(Duration.ZERO);
+
+        when(poolMetrics.pendingAcquireSize()).thenReturn(3);
+        monitoredConnectionPool.exhaustedFor();
+        Thread.sleep(50);
+        assertThat(monitoredConnectionPool.exhaustedFor()).isGreaterThanOrEqualTo(Duration.ofMillis(50));
+
+        when(poolMetrics.pendingAcquireSize()).thenReturn(0);
+        assertThat(monitoredConnectionPool.exhaustedFor()).isEqualTo(Duration.ZERO);
+    }
+}
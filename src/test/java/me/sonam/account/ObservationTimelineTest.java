@@ -0,0 +1,54 @@
+package me.sonam.account;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the repository calls of a request are kept locally in the same timeline as the request
+ */
+@AutoConfigureWebTestClient
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {Application.class})
+public class ObservationTimelineTest {
+    private static final Logger LOG = LoggerFactory.getLogger(ObservationTimelineTest.class);
+
+    @Autowired
+    private WebTestClient client;
+
+    @MockBean
+    private ReactiveJwtDecoder jwtDecoder;
+
+    @Test
+    public void repositoryCallsShareTheRequestTimeline() {
+        client.get().uri("/accounts/observationTimeline/active").exchange().expectStatus().isOk();
+
+        Map<String, List<Map<String, Object>>> traces = client.get().uri("/actuator/observations").exchange()
+                .expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<Map<String, List<Map<String, Object>>>>() {})
+                .returnResult().getResponseBody();
+        LOG.info("traces: {}", traces);
+
+        assertThat(traces.values()).anySatisfy(samples -> {
+            assertThat(samples).anySatisfy(sample -> assertThat(sample.get("name")).isEqualTo("http.server.requests"));
+            assertThat(samples).anySatisfy(sample -> {
+                assertThat(sample.get("name")).isEqualTo("account.repository");
+                assertThat((Map<String, String>) sample.get("tags")).containsEntry("method", "findByAuthenticationId");
+            });
+        });
+    }
+}
@@ -0,0 +1,158 @@
+package me.sonam.account;
+
+import me.sonam.account.limit.ConcurrencyLimitWebFilter;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.RequestPredicate;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test every route of the router function is in a concurrency limit group, except bulk create and
+ * export which are left out on purpose, so a new route can't be added without deciding its group.
+ */
+public class RouteGroupsTest extends MockDownstreamTest {
+    private static final Logger LOG = LoggerFactory.getLogger(RouteGroupsTest.class);
+
+    private static final Set<String> UNLIMITED = Set.of("POST /accounts", "GET /accounts/export");
+
+    @Autowired
+    @Qualifier("route")
+    private RouterFunction<ServerResponse> routerFunction;
+
+    @Autowired
+    private ConcurrencyLimitWebFilter concurrencyLimitWebFilter;
+
+    @Test
+    public void everyRouteIsInAGroup() {
+        List<String> routes = new ArrayList<>();
+        routerFunction.accept(new Routes(routes));
+        LOG.info("routes: {}", routes);
+
+        assertThat(routes).hasSize(13).containsAll(UNLIMITED);
+
+        for (String route : routes) {
+            String[] methodAndPath = route.split(" ", 2);
+            String group = concurrencyLimitWebFilter.group(HttpMethod.valueOf(methodAndPath[0]), PathContainer.parsePath(methodAndPath[1]));
+
+            if (UNLIMITED.contains(route)) {
+                assertThat(group).as(route).isNull();
+            }
+            else {
+                assertThat(group).as(route).isNotNull();
+            }
+        }
+    }
+
+    /**
+     * collects "METHOD path" of each route
+     */
+    private record Routes(List<String> routes) implements RouterFunctions.Visitor {
+        @Override
+        public void route(RequestPredicate predicate, HandlerFunction<?> handlerFunction) {
+            Set<HttpMethod> methods = new HashSet<>();
+            List<String> paths = new ArrayList<>();
+
+            predicate.accept(new RequestPredicates.Visitor() {
+                @Override
+                public void method(Set<HttpMethod> predicateMethods) {
+                    methods.addAll(predicateMethods);
+                }
+
+                @Override
+                public void path(String pattern) {
+                    paths.add(pattern);
+                }
+
+                @Override
+                public void pathExtension(String extension) {
+                }
+
+                @Override
+                public void header(String name, String value) {
+                }
+
+                @Override
+                public void queryParam(String name, String value) {
+                }
+
+                @Override
+                public void startAnd() {
+                }
+
+                @Override
+                public void and() {
+                }
+
+                @Override
+                public void endAnd() {
+                }
+
+                @Override
+                public void startOr() {
+                }
+
+                @Override
+                public void or() {
+                }
+
+                @Override
+                public void endOr() {
+                }
+
+                @Override
+                public void startNegate() {
+                }
+
+                @Override
+                public void endNegate() {
+                }
+
+                @Override
+                public void unknown(RequestPredicate predicate) {
+                }
+            });
+            methods.forEach(method -> paths.forEach(path -> routes.add(method.name() + " " + path)));
+        }
+
+        @Override
+        public void startNested(RequestPredicate predicate) {
+        }
+
+        @Override
+        public void endNested(RequestPredicate predicate) {
+        }
+
+        @Override
+        public void resources(Function<ServerRequest, Mono<Resource>> lookupFunction) {
+        }
+
+        @Override
+        public void attributes(Map<String, Object> attributes) {
+        }
+
+        @Override
+        public void unknown(RouterFunction<?> routerFunction) {
+        }
+    }
+}
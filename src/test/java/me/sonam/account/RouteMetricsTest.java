@@ -0,0 +1,62 @@
+package me.sonam.account;
+
+import me.sonam.account.repo.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.mockJwt;
+
+/**
+ * Test the per route timers are recorded with their outcome, including a request the security filter
+ * answers before any handler, and scraped by prometheus with a token
+ */
+@AutoConfigureWebTestClient
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {Application.class})
+public class RouteMetricsTest {
+    private static final Logger LOG = LoggerFactory.getLogger(RouteMetricsTest.class);
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @MockBean
+    private ReactiveJwtDecoder jwtDecoder;
+
+    @AfterEach
+    public void deleteAll() {
+        accountRepository.deleteAll().block();
+    }
+
+    @Test
+    public void routeOutcomesAreScraped() {
+        client.get().uri("/accounts/routeMetrics/active").exchange().expectStatus().isOk();
+        client.get().uri("/accounts/routeMetrics@sonam.email/password-secret/nosecret").exchange().expectStatus().isBadRequest();
+        client.get().uri("/accounts/export").exchange().expectStatus().isUnauthorized();
+
+        client.get().uri("/actuator/prometheus").exchange().expectStatus().isUnauthorized();
+
+        String scrape = client.mutateWith(mockJwt()).get().uri("/actuator/prometheus").exchange().expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        LOG.debug("scrape: {}", scrape);
+
+        assertThat(scrape).contains("account_route_seconds_bucket");
+        assertThat(scrape).containsPattern("account_route_seconds_count\\{.*outcome=\"ok\".*route=\"GET /accounts/\\{authenticationId}/active\".*}");
+        assertThat(scrape).containsPattern("account_route_seconds_count\\{.*outcome=\"rejected\",reason=\"no_account_found_with_email\",route=\"GET /accounts/\\{email}/password-secret/\\{secret}\".*}");
+        assertThat(scrape).containsPattern("account_route_seconds_count\\{.*outcome=\"rejected\",reason=\"unauthorized\",route=\"GET /accounts/export\".*}");
+        assertThat(scrape).contains("account_route_active{");
+    }
+}
@@ -0,0 +1,155 @@
+package me.sonam.account;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import me.sonam.account.repo.AccountRepository;
+import me.sonam.account.repo.SingleFlight;
+import me.sonam.account.repo.SingleFlightInterceptor;
+import me.sonam.account.repo.entity.Account;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test concurrent identical lookups share one query held open until all of them joined, that a completed
+ * lookup is not reused by the next call and that lookups inside a transaction always run their own query.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(classes = {Application.class})
+public class SingleFlightTest {
+    private static final Logger LOG = LoggerFactory.getLogger(SingleFlightTest.class);
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private ReactiveJwtDecoder jwtDecoder;
+
+    @AfterEach
+    public void deleteAll() {
+        accountRepository.deleteAll().block();
+    }
+
+    @Test
+    public void concurrentLookupsShareOneQuery() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AtomicInteger queries = new AtomicInteger();
+        Sinks.One<String> heldOpen = Sinks.one();
+        Lookup lookup = singleFlight(key -> Mono.defer(() -> {
+            queries.incrementAndGet();
+            return heldOpen.asMono();
+        }), registry);
+
+        List<String> results = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            lookup.find("same").subscribe(results::add);
+        }
+        LOG.info("50 lookups subscribed while the first query is still running");
+        heldOpen.tryEmitValue("found");
+
+        assertThat(results).hasSize(50).containsOnly("found");
+        assertThat(queries.get()).isEqualTo(1);
+        assertThat(registry.get(SingleFlightInterceptor.SINGLE_FLIGHT).tag("result", "leader").counter().count()).isEqualTo(1);
+        assertThat(registry.get(SingleFlightInterceptor.SINGLE_FLIGHT).tag("result", "shared").counter().count()).isEqualTo(49);
+    }
+
+    @Test
+    public void concurrentRepositoryLookupsGetTheSameAccount() {
+        String email = save("singleFlightBurst");
+        double leaders = count("findByEmail", "leader");
+        double shared = count("findByEmail", "shared");
+
+        StepVerifier.create(Flux.range(0, 50)
+                        .flatMap(i -> accountRepository.findByEmail(email).subscribeOn(Schedulers.parallel()))
+                        .map(Account::getAuthenticationId)
+                        .distinct())
+                .expectNext("singleFlightBurst")
+                .verifyComplete();
+
+        assertThat(count("findByEmail", "leader") - leaders + count("findByEmail", "shared") - shared).isEqualTo(50);
+    }
+
+    @Test
+    public void completedLookupIsNotReused() {
+        save("singleFlightSequential");
+        double leaders = count("existsByAuthenticationIdAndActiveTrue", "leader");
+        double shared = count("existsByAuthenticationIdAndActiveTrue", "shared");
+
+        StepVerifier.create(accountRepository.existsByAuthenticationIdAndActiveTrue("singleFlightSequential")).expectNext(true).verifyComplete();
+        StepVerifier.create(accountRepository.existsByAuthenticationIdAndActiveTrue("singleFlightSequential")).expectNext(true).verifyComplete();
+
+        assertThat(count("existsByAuthenticationIdAndActiveTrue", "leader") - leaders).isEqualTo(2);
+        assertThat(count("existsByAuthenticationIdAndActiveTrue", "shared") - shared).isZero();
+    }
+
+    @Test
+    public void transactionalLookupRunsItsOwnQuery() {
+        String email = save("singleFlightTransaction");
+        double leaders = count("findByEmail", "leader");
+        double shared = count("findByEmail", "shared");
+
+        StepVerifier.create(accountRepository.findByEmail(email).as(transactionalOperator::transactional))
+                .assertNext(account -> assertThat(account.getAuthenticationId()).isEqualTo("singleFlightTransaction"))
+                .verifyComplete();
+
+        assertThat(count("findByEmail", "leader")).isEqualTo(leaders);
+        assertThat(count("findByEmail", "shared")).isEqualTo(shared);
+    }
+
+    /**
+     * a repository method stand-in whose query the test controls
+     */
+    public interface Lookup {
+        @SingleFlight
+        Mono<String> find(String key);
+    }
+
+    private static Lookup singleFlight(Lookup target, SimpleMeterRegistry registry) {
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addInterface(Lookup.class);
+        proxyFactory.addAdvice(new SingleFlightInterceptor("Lookup", () -> registry));
+        return (Lookup) proxyFactory.getProxy();
+    }
+
+    private String save(String authenticationId) {
+        String email = authenticationId + "@sonam.co";
+        accountRepository.save(new Account(authenticationId, email, true, LocalDateTime.now(), UUID.randomUUID())).block();
+        return email;
+    }
+
+    private double count(String method, String result) {
+        Counter counter = meterRegistry.find(SingleFlightInterceptor.SINGLE_FLIGHT)
+                .tag("repository", AccountRepository.class.getSimpleName())
+                .tag("method", method).tag("result", result).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
@@ -1,5 +1,9 @@
 package me.sonam.account;
 
+import io.micrometer.observation.ObservationRegistry;
+import me.sonam.account.config.ClientCredentialsFilter;
+import me.sonam.account.config.DownstreamWebClients;
+import me.sonam.account.downstream.DownstreamGuards;
 import me.sonam.account.handler.UserAccountService;
 import me.sonam.security.headerfilter.ReactiveRequestContextHolder;
 import org.slf4j.Logger;
@@ -7,6 +11,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
 import org.springframework.web.reactive.function.client.WebClient;
 
 @Profile("localdevtest")
@@ -24,8 +29,15 @@ public class WebClientDevConfig {
         return new ReactiveRequestContextHolder(webClientBuilder());
     }
     @Bean
-    public UserAccountService userAccountService() {
-        return new UserAccountService(webClientBuilder());
+    public DownstreamWebClients downstreamWebClients(ObservationRegistry observationRegistry, Environment environment,
+                                                     DownstreamGuards downstreamGuards) {
+        return new DownstreamWebClients(webClientBuilder(), reactiveRequestContextHolder().headerFilter(),
+                new ClientCredentialsFilter(webClientBuilder(), environment), observationRegistry, environment, downstreamGuards);
+    }
+
+    @Bean
+    public UserAccountService userAccountService(DownstreamWebClients downstreamWebClients) {
+        return new UserAccountService(downstreamWebClients);
     }
 
 }